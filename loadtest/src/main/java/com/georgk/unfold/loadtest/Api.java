@@ -0,0 +1,137 @@
+package com.georgk.unfold.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+/**
+ * The endpoints the scenarios use, over the JDK HTTP client. Responses are read in full, so
+ * serialization cost on the server side is part of every measurement.
+ */
+final class Api implements AutoCloseable {
+
+    private static final String HAL_JSON = "application/hal+json";
+
+    /**
+     * Status of a create call, and the id of what it created or returned.
+     */
+    record Result(int status, UUID id) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    private final HttpClient client;
+    private final URI base;
+    private final Duration timeout;
+    private final ObjectMapper json = new ObjectMapper();
+
+    Api(URI base, Duration timeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(timeout)
+                .build();
+        this.base = base;
+        this.timeout = timeout;
+    }
+
+    boolean isUp() {
+        try {
+            HttpRequest health = HttpRequest.newBuilder(base.resolve("/actuator/health")).timeout(timeout).GET().build();
+            return send(health).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates the users through the bulk import and returns their ids in input order. Users that
+     * already exist, from an earlier run with the same label, are reused.
+     */
+    List<UUID> importUsers(List<String> usernames) throws IOException, InterruptedException {
+        String csv = "username\n" + String.join("\n", usernames) + "\n";
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/users:import"))
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "text/csv")
+                .header("Accept", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(csv))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("User import failed with " + response.statusCode() + ": " + response.body());
+        }
+        List<UUID> ids = new ArrayList<>();
+        for (String line : response.body().lines().toList()) {
+            JsonNode row = json.readTree(line);
+            if ("INVALID".equals(row.path("status").asText())) {
+                throw new IOException("User import rejected a row: " + line);
+            }
+            ids.add(UUID.fromString(row.get("id").asText()));
+        }
+        return ids;
+    }
+
+    Result putDirect(UUID user1, UUID user2) throws IOException, InterruptedException {
+        return create(withBody("/threads/direct", "PUT", Map.of("user1Id", user1, "user2Id", user2)));
+    }
+
+    Result createGroup(List<UUID> members, String name, UUID sender, String initialMessage) throws IOException, InterruptedException {
+        return create(withBody("/threads/group", "POST",
+                Map.of("participantIds", members, "name", name, "senderId", sender, "initialMessage", initialMessage)));
+    }
+
+    Result postMessage(UUID threadId, UUID sender, String content) throws IOException, InterruptedException {
+        return create(withBody("/threads/" + threadId + "/messages", "POST", Map.of("senderId", sender, "content", content)));
+    }
+
+    int listMessages(UUID threadId) throws IOException, InterruptedException {
+        return send(get("/threads/" + threadId + "/messages?page=0&size=20")).statusCode();
+    }
+
+    int listThreads(UUID userId) throws IOException, InterruptedException {
+        return send(get("/users/" + userId + "/threads?page=0&size=20")).statusCode();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(timeout).header("Accept", HAL_JSON).GET().build();
+    }
+
+    private HttpRequest withBody(String path, String method, Object body) throws IOException {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(timeout)
+                .header("Accept", HAL_JSON)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private Result create(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send(request);
+        if (response.statusCode() >= 300) {
+            return new Result(response.statusCode(), null);
+        }
+        return new Result(response.statusCode(), UUID.fromString(json.readTree(response.body()).get("id").asText()));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
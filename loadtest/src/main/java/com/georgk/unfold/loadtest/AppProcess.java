@@ -0,0 +1,79 @@
+package com.georgk.unfold.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application jar running in a child JVM, so that the generator and the server do not share
+ * a heap or a garbage collector. Output goes to a log file next to the reports.
+ */
+final class AppProcess implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final Process process;
+
+    private AppProcess(Process process) {
+        this.process = process;
+    }
+
+    static AppProcess start(Options options, Path log) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(options.appJar())) {
+            throw new IllegalStateException(options.appJar() + " not found, build it first with mvn package -DskipTests");
+        }
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-jar", options.appJar().toString(),
+                "--server.port=" + options.port(),
+                "--messaging.admission.enabled=" + options.admission()));
+        if (options.profiles() != null) {
+            command.add("--spring.profiles.active=" + options.profiles());
+        }
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile());
+        Map<String, String> env = builder.environment();
+        if (options.dbUrl() != null) {
+            env.put("DB_URL", options.dbUrl());
+        }
+        if (options.dbUsername() != null) {
+            env.put("DB_USERNAME", options.dbUsername());
+        }
+        if (options.dbPassword() != null) {
+            env.put("DB_PASSWORD", options.dbPassword());
+        }
+
+        AppProcess app = new AppProcess(builder.start());
+        try (Api api = new Api(url(options.port()), Duration.ofSeconds(5))) {
+            long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+            while (!api.isUp()) {
+                if (!app.process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + app.process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    app.close();
+                    throw new IllegalStateException("Application not up after " + STARTUP_TIMEOUT + ", see " + log);
+                }
+                Thread.sleep(500);
+            }
+        }
+        return app;
+    }
+
+    static URI url(int port) {
+        return URI.create("http://localhost:" + port);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.georgk.unfold.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: requests arrive on a schedule that does not wait for responses, each on a
+ * virtual thread of its own. Latency is measured from the scheduled arrival rather than from
+ * the moment the request was sent, so a stalled server or a lagging scheduler shows up in the
+ * numbers instead of silently lowering the offered load (coordinated omission).
+ */
+final class Driver {
+
+    // microseconds; anything slower than an hour is recorded as an hour
+    private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    /**
+     * Outcome of one scenario in a step. Failed requests, timeouts included, get a latency
+     * histogram of their own, so errors that come back fast cannot improve the percentiles.
+     */
+    static final class Stats {
+
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        final Histogram failureLatency = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+        void success(long micros) {
+            latency.recordValue(Math.min(micros, HIGHEST_LATENCY));
+        }
+
+        void failure(String cause, long micros) {
+            failureLatency.recordValue(Math.min(micros, HIGHEST_LATENCY));
+            errors.increment();
+            failures.computeIfAbsent(cause, c -> new LongAdder()).increment();
+        }
+
+        Map<String, Long> failureCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            failures.forEach((cause, count) -> counts.put(cause, count.sum()));
+            return counts;
+        }
+    }
+
+    /**
+     * One run at a fixed arrival rate.
+     *
+     * @param offered arrivals scheduled during the step
+     * @param dropped arrivals not sent because {@code maxInFlight} requests were already open
+     * @param elapsed time from the first arrival until the last response
+     */
+    record Step(double rate, Duration duration, long offered, long dropped, Duration elapsed, Map<Scenario, Stats> scenarios) {}
+
+    private final Api api;
+    private final World world;
+    private final Scenario.Picker picker;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final Duration drainTimeout;
+    private final SplittableRandom random;
+
+    Driver(Api api, World world, Options options) {
+        this.api = api;
+        this.world = world;
+        this.picker = new Scenario.Picker(options.mix());
+        this.poisson = options.poisson();
+        this.maxInFlight = options.maxInFlight();
+        this.drainTimeout = options.timeout().plusSeconds(5);
+        this.random = new SplittableRandom(options.seed());
+    }
+
+    Step run(double rate, Duration duration) throws InterruptedException {
+        Map<Scenario, Stats> scenarios = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            scenarios.put(scenario, new Stats());
+        }
+        Semaphore open = new Semaphore(maxInFlight);
+        double meanGapNanos = 1e9 / rate;
+        long offered = 0;
+        long dropped = 0;
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double next = start;
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (next < end) {
+                long scheduled = (long) next;
+                for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                offered++;
+                Scenario scenario = picker.pick(random);
+                SplittableRandom inputs = random.split();
+                if (open.tryAcquire()) {
+                    requests.execute(() -> {
+                        try {
+                            send(scenario, inputs, scheduled, scenarios.get(scenario));
+                        } finally {
+                            open.release();
+                        }
+                    });
+                } else {
+                    dropped++;
+                }
+                next += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+            }
+            if (open.tryAcquire(maxInFlight, drainTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                open.release(maxInFlight);
+            } else {
+                requests.shutdownNow();
+            }
+        }
+        return new Step(rate, duration, offered, dropped, Duration.ofNanos(System.nanoTime() - start), scenarios);
+    }
+
+    private void send(Scenario scenario, SplittableRandom inputs, long scheduled, Stats stats) {
+        try {
+            int status = scenario.execute(api, world, inputs);
+            if (status >= 200 && status < 300) {
+                stats.success(elapsedMicros(scheduled));
+            } else {
+                stats.failure("HTTP " + status, elapsedMicros(scheduled));
+            }
+        } catch (HttpTimeoutException e) {
+            stats.failure("timeout", elapsedMicros(scheduled));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.failure("interrupted", elapsedMicros(scheduled));
+        } catch (Exception e) {
+            stats.failure(e.getClass().getSimpleName(), elapsedMicros(scheduled));
+        }
+    }
+
+    private static long elapsedMicros(long scheduled) {
+        return (System.nanoTime() - scheduled) / 1_000;
+    }
+}
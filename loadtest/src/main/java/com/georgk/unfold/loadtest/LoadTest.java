@@ -0,0 +1,212 @@
+package com.georgk.unfold.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * End-to-end load test of the messaging API. Starts the application jar against a local
+ * PostgreSQL (or targets {@code --url}), seeds users and threads through the API, then replays a
+ * weighted mix of {@link Scenario scenarios} at one or more open-model arrival rates and writes a
+ * {@link Report}. Run {@code java -jar unfold-loadtest.jar --help} for the options.
+ */
+public final class LoadTest {
+
+    private static final int SEED_CONCURRENCY = 32;
+    // seeding hits a cold server, and is not measured
+    private static final Duration SEED_TIMEOUT = Duration.ofMinutes(1);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.print(Options.USAGE);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("compare")) {
+            if (args.length != 3) {
+                System.err.print(Options.USAGE);
+                System.exit(2);
+            }
+            Report.compare(Path.of(args[1]), Path.of(args[2]), System.out);
+            return;
+        }
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+        run(options);
+    }
+
+    private static void run(Options options) throws Exception {
+        if (options.groups() + options.directs() == 0) {
+            throw new IllegalArgumentException("Seed at least one group or direct thread");
+        }
+        Map<String, Object> environment = Report.environment();
+        String commit = git("rev-parse", "--short", "HEAD");
+        String label = options.label() != null ? options.label()
+                : (commit != null ? commit : "run") + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Files.createDirectories(options.out());
+
+        AppProcess app = null;
+        URI url;
+        if (options.url() != null) {
+            url = URI.create(options.url());
+        } else {
+            Path log = options.out().resolve(label + "-app.log");
+            System.out.printf("starting %s on port %d, log in %s%n", options.appJar(), options.port(), log);
+            app = AppProcess.start(options, log);
+            url = AppProcess.url(options.port());
+        }
+        try {
+            World world;
+            try (Api seeding = new Api(url, SEED_TIMEOUT)) {
+                world = seed(seeding, options, label);
+            }
+            List<Driver.Step> steps = new ArrayList<>();
+            try (Api api = new Api(url, options.timeout())) {
+                Driver driver = new Driver(api, world, options);
+                if (!options.warmup().isZero()) {
+                    System.out.printf("warming up at %s/s for %s%n", options.rates().getFirst(), options.warmup());
+                    driver.run(options.rates().getFirst(), options.warmup());
+                }
+                for (double rate : options.rates()) {
+                    System.out.printf("running at %s/s for %s%n", rate, options.duration());
+                    steps.add(driver.run(rate, options.duration()));
+                }
+            }
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("label", label);
+            run.put("commit", commit);
+            String changes = git("status", "--porcelain", "--untracked-files=no");
+            run.put("dirty", changes == null ? null : !changes.isEmpty());
+            run.put("target", options.url() != null ? options.url() : options.appJar().toString());
+            run.put("environment", environment);
+            run.put("options", Report.options(options));
+            run.put("threadsAfterRun", world.threadCount());
+            Report.write(options.out(), label, run, steps, System.out);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    /**
+     * Users through the bulk import, then group and direct threads with a few messages each,
+     * {@value #SEED_CONCURRENCY} requests at a time. Usernames carry the run label, so runs can
+     * share a database.
+     */
+    private static World seed(Api api, Options options, String label) throws Exception {
+        long start = System.nanoTime();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < options.users(); i++) {
+            usernames.add("lt-" + label + "-" + i);
+        }
+        World world = new World(api.importUsers(usernames));
+
+        SplittableRandom random = new SplittableRandom(options.seed());
+        List<SeedTask> threads = new ArrayList<>();
+        for (int i = 0; i < options.groups(); i++) {
+            SplittableRandom inputs = random.split();
+            threads.add(() -> {
+                List<UUID> members = world.randomUsers(3 + inputs.nextInt(6), inputs);
+                world.addThread(expect(api.createGroup(members, "seed group", members.getFirst(), World.randomText(inputs))), members);
+            });
+        }
+        for (int i = 0; i < options.directs(); i++) {
+            SplittableRandom inputs = random.split();
+            threads.add(() -> {
+                List<UUID> pair = world.randomUsers(2, inputs);
+                world.addThread(expect(api.putDirect(pair.get(0), pair.get(1))), pair);
+            });
+        }
+        parallel(threads);
+
+        List<SeedTask> messages = new ArrayList<>();
+        for (World.Thread thread : world.threads()) {
+            for (int i = 0; i < options.messagesPerThread(); i++) {
+                SplittableRandom inputs = random.split();
+                messages.add(() -> expect(api.postMessage(thread.id(),
+                        thread.members().get(inputs.nextInt(thread.members().size())), World.randomText(inputs))));
+            }
+        }
+        parallel(messages);
+        System.out.printf("seeded %d users, %d threads and %d messages in %ds%n",
+                options.users(), world.threadCount(), messages.size(), (System.nanoTime() - start) / 1_000_000_000);
+        return world;
+    }
+
+    private interface SeedTask {
+        void call() throws Exception;
+    }
+
+    private static void parallel(List<SeedTask> tasks) throws Exception {
+        Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (SeedTask task : tasks) {
+                permits.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        task.call();
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static UUID expect(Api.Result result) throws IOException {
+        if (result.status() == 429) {
+            throw new IOException("Seeding request was rate limited (429): turn the application's rate limits off, "
+                    + "with --admission=false or, for an application given with --url, ADMISSION_ENABLED=false");
+        }
+        if (!result.ok()) {
+            throw new IOException("Seeding request failed with " + result.status());
+        }
+        return result.id();
+    }
+
+    // null outside a git checkout or without git
+    private static String git(String... args) {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(args));
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            return process.waitFor() == 0 ? output : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
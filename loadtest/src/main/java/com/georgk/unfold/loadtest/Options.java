@@ -0,0 +1,116 @@
+package com.georgk.unfold.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Command line options, given as {@code --name=value}. Everything has a default, so a bare run
+ * starts the application jar of the main module against the local database and drives it at
+ * 200 requests per second.
+ */
+record Options(String url,
+               Path appJar,
+               int port,
+               String profiles,
+               boolean admission,
+               String dbUrl,
+               String dbUsername,
+               String dbPassword,
+               int users,
+               int groups,
+               int directs,
+               int messagesPerThread,
+               List<Double> rates,
+               Duration warmup,
+               Duration duration,
+               boolean poisson,
+               Map<Scenario, Integer> mix,
+               int maxInFlight,
+               Duration timeout,
+               long seed,
+               Path out,
+               String label) {
+
+    static final String USAGE = """
+            usage: java -jar unfold-loadtest.jar [--name=value ...]
+                   java -jar unfold-loadtest.jar compare <baseline.json> <candidate.json>
+
+              --url=                  drive a running application instead of starting one
+              --app-jar=target/spring-boot-unfold-1.0-SNAPSHOT.jar
+              --port=8089             port of the started application
+              --profiles=             Spring profiles of the started application, e.g. reactive
+              --admission=false       true keeps the started application's rate limits on
+              --db-url= --db-username= --db-password=
+                                      database of the started application (default: its own defaults)
+              --users=2000 --groups=500 --directs=2000 --messages-per-thread=5
+                                      data seeded through the API before the run
+              --rate=200              arrivals per second; a list (100,200,400) runs one step per rate
+              --warmup=PT20S          unrecorded run at the first rate
+              --duration=PT60S        recorded run per rate
+              --arrivals=poisson      poisson or uniform inter-arrival times
+              --mix=direct:5,group:2,post:30,messages:33,inbox:30
+              --max-in-flight=2000    arrivals beyond this many open requests are dropped and counted
+              --timeout=PT10S         per request
+              --seed=42
+              --out=target/loadtest   where reports are written
+              --label=                report name (default: commit and time)
+            """;
+
+    static Options parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        Options options = new Options(
+                take(values, "url", null),
+                Path.of(take(values, "app-jar", "target/spring-boot-unfold-1.0-SNAPSHOT.jar")),
+                Integer.parseInt(take(values, "port", "8089")),
+                take(values, "profiles", null),
+                Boolean.parseBoolean(take(values, "admission", "false")),
+                take(values, "db-url", null),
+                take(values, "db-username", null),
+                take(values, "db-password", null),
+                Integer.parseInt(take(values, "users", "2000")),
+                Integer.parseInt(take(values, "groups", "500")),
+                Integer.parseInt(take(values, "directs", "2000")),
+                Integer.parseInt(take(values, "messages-per-thread", "5")),
+                Arrays.stream(take(values, "rate", "200").split(",")).map(String::trim).map(Double::parseDouble).toList(),
+                Duration.parse(take(values, "warmup", "PT20S")),
+                Duration.parse(take(values, "duration", "PT60S")),
+                parseArrivals(take(values, "arrivals", "poisson")),
+                Scenario.parseMix(take(values, "mix", "direct:5,group:2,post:30,messages:33,inbox:30")),
+                Integer.parseInt(take(values, "max-in-flight", "2000")),
+                Duration.parse(take(values, "timeout", "PT10S")),
+                Long.parseLong(take(values, "seed", "42")),
+                Path.of(take(values, "out", "target/loadtest")),
+                take(values, "label", null));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (options.users < 8) {
+            throw new IllegalArgumentException("--users must be at least 8");
+        }
+        if (options.rates.stream().anyMatch(rate -> rate <= 0)) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static boolean parseArrivals(String arrivals) {
+        return switch (arrivals) {
+            case "poisson" -> true;
+            case "uniform" -> false;
+            default -> throw new IllegalArgumentException("--arrivals must be poisson or uniform, got " + arrivals);
+        };
+    }
+}
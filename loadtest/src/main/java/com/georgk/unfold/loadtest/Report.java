@@ -0,0 +1,208 @@
+package com.georgk.unfold.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Reports of a run: {@code <label>.json} with the numbers to compare across commits, and one
+ * HdrHistogram percentile file ({@code .hgrm}, in milliseconds) per step and scenario for
+ * plotting full distributions. {@link #compare} prints two JSON reports side by side.
+ */
+final class Report {
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String ALL = "all";
+    private static final String ROW = "%-9s %9s %9s %9s %9s %9s %9s %9s %9s%n";
+
+    private Report() {
+    }
+
+    static Path write(Path dir, String label, Map<String, Object> run, List<Driver.Step> steps, PrintStream console) throws IOException {
+        Files.createDirectories(dir);
+        List<Map<String, Object>> stepReports = new ArrayList<>();
+        for (Driver.Step step : steps) {
+            String prefix = label + "-" + formatRate(step.rate()) + "rps-";
+            console.printf("%nrate %s/s for %s: offered %d, dropped %d (%s%%)%n", formatRate(step.rate()), step.duration(),
+                    step.offered(), step.dropped(), percent(step.dropped(), step.offered()));
+            console.printf(ROW, "scenario", "ok", "errors", "error %", "ok/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+            Map<String, Object> scenarios = new LinkedHashMap<>();
+            Histogram all = new Histogram(3);
+            Histogram allFailures = new Histogram(3);
+            long allErrors = 0;
+            for (Map.Entry<Scenario, Driver.Stats> entry : step.scenarios().entrySet()) {
+                Driver.Stats stats = entry.getValue();
+                if (stats.latency.getTotalCount() == 0 && stats.errors.sum() == 0) {
+                    continue;
+                }
+                all.add(stats.latency);
+                allFailures.add(stats.failureLatency);
+                allErrors += stats.errors.sum();
+                scenarios.put(entry.getKey().key, summary(entry.getKey().key, stats.latency, stats.failureLatency,
+                        stats.errors.sum(), stats.failureCounts(), step, console));
+                writePercentiles(dir.resolve(prefix + entry.getKey().key + ".hgrm"), stats.latency);
+            }
+            scenarios.put(ALL, summary(ALL, all, allFailures, allErrors, Map.of(), step, console));
+            writePercentiles(dir.resolve(prefix + ALL + ".hgrm"), all);
+
+            Map<String, Object> stepReport = new LinkedHashMap<>();
+            stepReport.put("rate", step.rate());
+            stepReport.put("durationSeconds", step.duration().toMillis() / 1000.0);
+            stepReport.put("offered", step.offered());
+            stepReport.put("dropped", step.dropped());
+            stepReport.put("droppedPercent", percent(step.dropped(), step.offered()));
+            stepReport.put("elapsedSeconds", step.elapsed().toMillis() / 1000.0);
+            stepReport.put("scenarios", scenarios);
+            stepReports.add(stepReport);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>(run);
+        report.put("steps", stepReports);
+        Path file = dir.resolve(label + ".json");
+        JSON.writeValue(file.toFile(), report);
+        console.printf("%nreport written to %s%n", file);
+        return file;
+    }
+
+    /**
+     * Prints p50, p99, p999, throughput and error rate of {@code candidate} next to {@code baseline},
+     * step by step in order and scenario by scenario, after the share of arrivals each step dropped.
+     * The percentiles cover successful requests only, so they only compare alongside those rates.
+     */
+    static void compare(Path baseline, Path candidate, PrintStream console) throws IOException {
+        JsonNode base = JSON.readTree(baseline.toFile());
+        JsonNode cand = JSON.readTree(candidate.toFile());
+        console.printf("baseline:  %s (%s)%ncandidate: %s (%s)%n",
+                base.path("label").asText(), base.path("commit").asText("?"), cand.path("label").asText(), cand.path("commit").asText("?"));
+        JsonNode baseSteps = base.path("steps");
+        JsonNode candSteps = cand.path("steps");
+        for (int i = 0; i < Math.min(baseSteps.size(), candSteps.size()); i++) {
+            JsonNode baseStep = baseSteps.get(i);
+            JsonNode candStep = candSteps.get(i);
+            console.printf("%nrate %s/s vs %s/s, dropped %s%% vs %s%%%n", formatRate(baseStep.path("rate").asDouble()),
+                    formatRate(candStep.path("rate").asDouble()), droppedPercent(baseStep), droppedPercent(candStep));
+            console.printf("%-9s %-8s %10s %10s %8s%n", "scenario", "metric", "baseline", "candidate", "change");
+            for (Iterator<String> names = baseStep.path("scenarios").fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                JsonNode before = baseStep.path("scenarios").path(name);
+                JsonNode after = candStep.path("scenarios").path(name);
+                if (after.isMissingNode()) {
+                    continue;
+                }
+                for (String metric : List.of("p50Ms", "p99Ms", "p999Ms", "okPerSecond", "errors", "errorPercent")) {
+                    double b = metric(before, metric);
+                    double a = metric(after, metric);
+                    String change = b == 0 ? "" : String.format("%+.1f%%", (a - b) / b * 100);
+                    console.printf("%-9s %-8s %10.2f %10.2f %8s%n", name,
+                            metric.replace("Ms", "").replace("okPerSecond", "ok/s").replace("errorPercent", "error %"), b, a, change);
+                }
+            }
+        }
+        if (baseSteps.size() != candSteps.size()) {
+            console.printf("%nreports have %d and %d steps, compared the first %d%n",
+                    baseSteps.size(), candSteps.size(), Math.min(baseSteps.size(), candSteps.size()));
+        }
+    }
+
+    static Map<String, Object> options(Options options) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("profiles", options.profiles());
+        values.put("admission", options.admission());
+        values.put("users", options.users());
+        values.put("groups", options.groups());
+        values.put("directs", options.directs());
+        values.put("messagesPerThread", options.messagesPerThread());
+        values.put("rates", options.rates());
+        values.put("warmupSeconds", options.warmup().toMillis() / 1000.0);
+        values.put("durationSeconds", options.duration().toMillis() / 1000.0);
+        values.put("arrivals", options.poisson() ? "poisson" : "uniform");
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        options.mix().forEach((scenario, weight) -> mix.put(scenario.key, weight));
+        values.put("mix", mix);
+        values.put("maxInFlight", options.maxInFlight());
+        values.put("timeoutSeconds", options.timeout().toMillis() / 1000.0);
+        values.put("seed", options.seed());
+        return values;
+    }
+
+    static Map<String, Object> environment() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("java", System.getProperty("java.vm.name") + " " + Runtime.version());
+        values.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        values.put("cpus", Runtime.getRuntime().availableProcessors());
+        values.put("startedAt", Instant.now().toString());
+        return values;
+    }
+
+    // reports written before the rates were recorded still have the counts they derive from
+    private static double droppedPercent(JsonNode step) {
+        return step.has("droppedPercent") ? step.path("droppedPercent").asDouble()
+                : percent(step.path("dropped").asLong(), step.path("offered").asLong());
+    }
+
+    private static double metric(JsonNode scenario, String metric) {
+        if (metric.equals("errorPercent") && !scenario.has(metric)) {
+            long errors = scenario.path("errors").asLong();
+            return percent(errors, scenario.path("count").asLong() + errors);
+        }
+        return scenario.path(metric).asDouble();
+    }
+
+    // latencies are recorded in microseconds; those of failed requests are reported separately
+    private static Map<String, Object> summary(String name, Histogram latency, Histogram failureLatency, long errors,
+                                               Map<String, Long> failures, Driver.Step step, PrintStream console) {
+        double seconds = step.duration().toMillis() / 1000.0;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", latency.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("errorPercent", percent(errors, latency.getTotalCount() + errors));
+        summary.put("okPerSecond", round(latency.getTotalCount() / seconds));
+        summary.put("p50Ms", millis(latency.getValueAtPercentile(50)));
+        summary.put("p90Ms", millis(latency.getValueAtPercentile(90)));
+        summary.put("p99Ms", millis(latency.getValueAtPercentile(99)));
+        summary.put("p999Ms", millis(latency.getValueAtPercentile(99.9)));
+        summary.put("maxMs", millis(latency.getMaxValue()));
+        if (errors > 0) {
+            summary.put("failureP50Ms", millis(failureLatency.getValueAtPercentile(50)));
+            summary.put("failureP99Ms", millis(failureLatency.getValueAtPercentile(99)));
+            summary.put("failureMaxMs", millis(failureLatency.getMaxValue()));
+        }
+        if (!failures.isEmpty()) {
+            summary.put("failures", failures);
+        }
+        console.printf(ROW, name, latency.getTotalCount(), errors, summary.get("errorPercent"), summary.get("okPerSecond"),
+                summary.get("p50Ms"), summary.get("p99Ms"), summary.get("p999Ms"), summary.get("maxMs"));
+        return summary;
+    }
+
+    private static void writePercentiles(Path file, Histogram latency) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            latency.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : round(part * 100.0 / whole);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static String formatRate(double rate) {
+        return rate == Math.rint(rate) ? Long.toString((long) rate) : Double.toString(rate);
+    }
+}
@@ -0,0 +1,126 @@
+package com.georgk.unfold.loadtest;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * One request against a real endpoint, with its inputs drawn from the seeded {@link World}.
+ * Threads created by a scenario join the world, so later posts and reads reach them too.
+ */
+enum Scenario {
+
+    DIRECT("direct") {
+        @Override
+        int execute(Api api, World world, RandomGenerator random) throws Exception {
+            List<UUID> pair = world.randomUsers(2, random);
+            Api.Result result = api.putDirect(pair.get(0), pair.get(1));
+            if (result.ok()) {
+                world.addThread(result.id(), pair);
+            }
+            return result.status();
+        }
+    },
+
+    GROUP("group") {
+        @Override
+        int execute(Api api, World world, RandomGenerator random) throws Exception {
+            List<UUID> members = world.randomUsers(3 + random.nextInt(6), random);
+            Api.Result result = api.createGroup(members, "load group", members.getFirst(), World.randomText(random));
+            if (result.ok()) {
+                world.addThread(result.id(), members);
+            }
+            return result.status();
+        }
+    },
+
+    POST("post") {
+        @Override
+        int execute(Api api, World world, RandomGenerator random) throws Exception {
+            World.Thread thread = world.randomThread(random);
+            UUID sender = thread.members().get(random.nextInt(thread.members().size()));
+            return api.postMessage(thread.id(), sender, World.randomText(random)).status();
+        }
+    },
+
+    MESSAGES("messages") {
+        @Override
+        int execute(Api api, World world, RandomGenerator random) throws Exception {
+            return api.listMessages(world.randomThread(random).id());
+        }
+    },
+
+    INBOX("inbox") {
+        @Override
+        int execute(Api api, World world, RandomGenerator random) throws Exception {
+            return api.listThreads(world.randomUsers(1, random).getFirst());
+        }
+    };
+
+    final String key;
+
+    Scenario(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Sends the request and returns the response status.
+     */
+    abstract int execute(Api api, World world, RandomGenerator random) throws Exception;
+
+    static Scenario of(String key) {
+        for (Scenario scenario : values()) {
+            if (scenario.key.equals(key)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario " + key + ", expected one of direct, group, post, messages, inbox");
+    }
+
+    /**
+     * Parses {@code name:weight,...}; scenarios left out get no traffic.
+     */
+    static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || Integer.parseInt(parts[1]) < 0) {
+                throw new IllegalArgumentException("Expected scenario:weight in --mix, got " + entry);
+            }
+            weights.put(of(parts[0]), Integer.parseInt(parts[1]));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return weights;
+    }
+
+    /**
+     * Draws scenarios in proportion to their weights.
+     */
+    static final class Picker {
+
+        private final Scenario[] scenarios;
+        private final int[] cumulative;
+
+        Picker(Map<Scenario, Integer> weights) {
+            List<Scenario> picked = new ArrayList<>();
+            List<Integer> sums = new ArrayList<>();
+            int sum = 0;
+            for (Map.Entry<Scenario, Integer> entry : weights.entrySet()) {
+                if (entry.getValue() > 0) {
+                    sum += entry.getValue();
+                    picked.add(entry.getKey());
+                    sums.add(sum);
+                }
+            }
+            this.scenarios = picked.toArray(Scenario[]::new);
+            this.cumulative = sums.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        Scenario pick(RandomGenerator random) {
+            int draw = random.nextInt(cumulative[cumulative.length - 1]);
+            int i = Arrays.binarySearch(cumulative, draw + 1);
+            return scenarios[i >= 0 ? i : -i - 1];
+        }
+    }
+}
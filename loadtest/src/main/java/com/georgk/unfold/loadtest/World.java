@@ -0,0 +1,63 @@
+package com.georgk.unfold.loadtest;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Users and threads known to the load generator: the seeded ones plus those created during the
+ * run. Both lists only grow, so readers pick from them without further coordination.
+ */
+final class World {
+
+    record Thread(UUID id, List<UUID> members) {}
+
+    private static final String[] WORDS = {
+            "deploy", "lunch", "review", "ticket", "meeting", "release", "coffee", "incident", "design", "budget",
+            "weekend", "standup", "customer", "invoice", "roadmap", "draft", "hiring", "metrics", "backlog", "demo"
+    };
+
+    private final List<UUID> users;
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+    World(List<UUID> users) {
+        this.users = List.copyOf(users);
+    }
+
+    void addThread(UUID id, List<UUID> members) {
+        threads.add(new Thread(id, List.copyOf(members)));
+    }
+
+    int threadCount() {
+        return threads.size();
+    }
+
+    List<Thread> threads() {
+        return List.copyOf(threads);
+    }
+
+    Thread randomThread(RandomGenerator random) {
+        return threads.get(random.nextInt(threads.size()));
+    }
+
+    /**
+     * {@code count} distinct users, chosen uniformly.
+     */
+    List<UUID> randomUsers(int count, RandomGenerator random) {
+        Set<UUID> picked = new LinkedHashSet<>();
+        while (picked.size() < count) {
+            picked.add(users.get(random.nextInt(users.size())));
+        }
+        return List.copyOf(picked);
+    }
+
+    /**
+     * A message of 5-20 words from a small vocabulary.
+     */
+    static String randomText(RandomGenerator random) {
+        StringJoiner text = new StringJoiner(" ");
+        for (int i = 5 + random.nextInt(16); i > 0; i--) {
+            text.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
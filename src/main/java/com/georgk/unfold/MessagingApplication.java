@@ -2,8 +2,12 @@ package com.georgk.unfold;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// the R2DBC driver is only used by the reactive read path, which configures its own pool
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class MessagingApplication {
     public static void main(String[] args) {
         SpringApplication.run(MessagingApplication.class, args);
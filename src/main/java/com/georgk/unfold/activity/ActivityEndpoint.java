@@ -0,0 +1,44 @@
+package com.georgk.unfold.activity;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@code /actuator/activity}: the busiest threads and users of the sliding window, and
+ * {@code /actuator/activity/{id}} for the estimate of a single id. Counts are estimates that
+ * may be slightly high, never low.
+ */
+@Component
+@Endpoint(id = "activity")
+public class ActivityEndpoint {
+
+    public record Dimension(long events, List<ActivitySketch.Count> top) {}
+
+    public record Summary(Duration window, Dimension threads, Dimension users) {}
+
+    public record Estimate(UUID id, Duration window, long asThread, long asUser) {}
+
+    private final ActivityTracker tracker;
+
+    public ActivityEndpoint(ActivityTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @ReadOperation
+    public Summary activity() {
+        return new Summary(tracker.threads().window(),
+                new Dimension(tracker.threads().total(), tracker.threads().top()),
+                new Dimension(tracker.users().total(), tracker.users().top()));
+    }
+
+    @ReadOperation
+    public Estimate estimate(@Selector UUID id) {
+        return new Estimate(id, tracker.threads().window(), tracker.threads().estimate(id), tracker.users().estimate(id));
+    }
+}
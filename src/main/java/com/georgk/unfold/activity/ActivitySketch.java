@@ -0,0 +1,246 @@
+package com.georgk.unfold.activity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate event counts per id over a sliding window, plus the current top K ids, in fixed
+ * memory. The window is split into slices, each a count-min sketch ({@code depth} rows of
+ * {@code width} counters); an estimate sums a counter over the live slices and takes the
+ * minimum over the rows, so it may overcount through collisions but never undercounts. A slice
+ * is cleared lazily by the first event that lands in it after the window has moved past it.
+ * <p>
+ * The top K are kept in a min-heap whose lock is only taken when an id that is not in the heap
+ * has an estimate above the heap's minimum; events for ids already in the heap and for the long
+ * tail of cold ids are lock-free. Counts in the heap are refreshed whenever a slice expires and
+ * before an entry would be evicted. Events racing with a slice being cleared may be lost, which
+ * is acceptable for a load signal.
+ */
+public final class ActivitySketch {
+
+    public record Count(UUID id, long count) {}
+
+    private static final class Candidate {
+        final UUID id;
+        final long h1;
+        final long h2;
+        long count;
+
+        Candidate(UUID id, long h1, long h2, long count) {
+            this.id = id;
+            this.h1 = h1;
+            this.h2 = h2;
+            this.count = count;
+        }
+    }
+
+    private final int depth;
+    private final int width;
+    private final int slices;
+    private final long sliceMillis;
+    private final int topK;
+    private final LongSupplier clockMillis;
+
+    private final AtomicIntegerArray[] counters; // per slice, depth rows of width counters
+    private final AtomicLongArray sliceEpochs; // index of the time slice each ring slot currently holds
+    private final AtomicLongArray sliceTotals;
+
+    // guarded by "heap"
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.count));
+    private final Map<UUID, Candidate> candidates = new HashMap<>();
+    // read without the lock
+    private final Set<UUID> members = ConcurrentHashMap.newKeySet();
+    private volatile long admissionThreshold;
+
+    public ActivitySketch(Duration window, int slices, int width, int depth, int topK, LongSupplier clockMillis) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.slices = slices;
+        this.sliceMillis = Math.max(1, window.toMillis() / slices);
+        this.topK = topK;
+        this.clockMillis = clockMillis;
+        this.counters = new AtomicIntegerArray[slices];
+        for (int i = 0; i < slices; i++) {
+            counters[i] = new AtomicIntegerArray(depth * this.width);
+        }
+        this.sliceEpochs = new AtomicLongArray(slices);
+        this.sliceTotals = new AtomicLongArray(slices);
+    }
+
+    public Duration window() {
+        return Duration.ofMillis(sliceMillis * slices);
+    }
+
+    /**
+     * Counts one event for {@code id}.
+     */
+    public void record(UUID id) {
+        long epoch = clockMillis.getAsLong() / sliceMillis;
+        int slice = advance(epoch);
+        long h1 = mix(id.getMostSignificantBits());
+        long h2 = mix(id.getLeastSignificantBits()) | 1;
+        AtomicIntegerArray cells = counters[slice];
+        for (int row = 0; row < depth; row++) {
+            cells.incrementAndGet(cell(row, h1, h2));
+        }
+        sliceTotals.incrementAndGet(slice);
+        if (!members.contains(id)) {
+            long estimate = estimate(h1, h2, epoch);
+            if (estimate > admissionThreshold) {
+                offer(id, h1, h2, estimate, epoch);
+            }
+        }
+    }
+
+    /**
+     * Estimated number of events for {@code id} within the window.
+     */
+    public long estimate(UUID id) {
+        long epoch = clockMillis.getAsLong() / sliceMillis;
+        return estimate(mix(id.getMostSignificantBits()), mix(id.getLeastSignificantBits()) | 1, epoch);
+    }
+
+    /**
+     * Exact number of events within the window.
+     */
+    public long total() {
+        long epoch = clockMillis.getAsLong() / sliceMillis;
+        long total = 0;
+        for (int s = 0; s < slices; s++) {
+            if (live(s, epoch)) {
+                total += sliceTotals.get(s);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Ids with the most events within the window, busiest first.
+     */
+    public List<Count> top() {
+        long epoch = clockMillis.getAsLong() / sliceMillis;
+        List<Count> top = new ArrayList<>(topK);
+        synchronized (heap) {
+            for (Candidate c : candidates.values()) {
+                long count = estimate(c.h1, c.h2, epoch);
+                if (count > 0) {
+                    top.add(new Count(c.id, count));
+                }
+            }
+        }
+        top.sort(Comparator.comparingLong(Count::count).reversed());
+        return top;
+    }
+
+    // ring slot of the epoch, cleared first if it still holds an expired slice
+    private int advance(long epoch) {
+        int slice = (int) (epoch % slices);
+        long held = sliceEpochs.get(slice);
+        if (held < epoch && sliceEpochs.compareAndSet(slice, held, epoch)) {
+            AtomicIntegerArray cells = counters[slice];
+            for (int i = 0; i < cells.length(); i++) {
+                cells.set(i, 0);
+            }
+            sliceTotals.set(slice, 0);
+            rescore(epoch);
+        }
+        return slice;
+    }
+
+    private void offer(UUID id, long h1, long h2, long estimate, long epoch) {
+        synchronized (heap) {
+            Candidate existing = candidates.get(id);
+            if (existing != null) {
+                return; // added concurrently
+            }
+            // stored counts only grow stale downwards, so refresh the minimum before comparing against it
+            while (heap.size() >= topK) {
+                Candidate min = heap.peek();
+                long fresh = estimate(min.h1, min.h2, epoch);
+                if (fresh == min.count) {
+                    break;
+                }
+                heap.poll();
+                min.count = fresh;
+                heap.add(min);
+            }
+            if (heap.size() >= topK) {
+                if (estimate <= heap.peek().count) {
+                    admissionThreshold = heap.peek().count;
+                    return;
+                }
+                Candidate evicted = heap.poll();
+                candidates.remove(evicted.id);
+                members.remove(evicted.id);
+            }
+            Candidate added = new Candidate(id, h1, h2, estimate);
+            heap.add(added);
+            candidates.put(id, added);
+            members.add(id);
+            admissionThreshold = heap.size() < topK ? 0 : heap.peek().count;
+        }
+    }
+
+    // re-estimates the heap after a slice expired, dropping ids without events in the window
+    private void rescore(long epoch) {
+        synchronized (heap) {
+            List<Candidate> all = new ArrayList<>(heap);
+            heap.clear();
+            for (Candidate c : all) {
+                c.count = estimate(c.h1, c.h2, epoch);
+                if (c.count > 0) {
+                    heap.add(c);
+                } else {
+                    candidates.remove(c.id);
+                    members.remove(c.id);
+                }
+            }
+            admissionThreshold = heap.size() < topK ? 0 : heap.peek().count;
+        }
+    }
+
+    private long estimate(long h1, long h2, long epoch) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(row, h1, h2);
+            long sum = 0;
+            for (int s = 0; s < slices; s++) {
+                if (live(s, epoch)) {
+                    sum += counters[s].get(cell);
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private boolean live(int slice, long epoch) {
+        long held = sliceEpochs.get(slice);
+        return held <= epoch && held > epoch - slices;
+    }
+
+    // row i uses h1 + i * h2 (Kirsch-Mitzenmacher), so one pair of hashes serves all rows
+    private int cell(int row, long h1, long h2) {
+        return row * width + ((int) ((h1 + row * h2) >>> 32) & (width - 1));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
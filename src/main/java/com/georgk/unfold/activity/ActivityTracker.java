@@ -0,0 +1,111 @@
+package com.georgk.unfold.activity;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window activity per thread and per user, fed by the message and read endpoints: the
+ * signal for spotting which threads or senders drive a load spike without querying
+ * {@code messages}. Read through the {@code activity} actuator endpoint and the
+ * {@code messaging.activity.*} gauges.
+ */
+@Component
+public class ActivityTracker implements MeterBinder {
+
+    // the rank gauges of a dimension are read together on every scrape and share one top()
+    private static final long TOP_CACHE_MILLIS = 1_000;
+
+    private final LongSupplier clockMillis = monotonicMillis();
+    private final ActivitySketch threads;
+    private final ActivitySketch users;
+    private final int topK;
+
+    public ActivityTracker(@Value("${messaging.activity.window:PT1M}") Duration window,
+                           @Value("${messaging.activity.slices:6}") int slices,
+                           @Value("${messaging.activity.width:4096}") int width,
+                           @Value("${messaging.activity.depth:4}") int depth,
+                           @Value("${messaging.activity.top-k:10}") int topK) {
+        this.threads = new ActivitySketch(window, slices, width, depth, topK, clockMillis);
+        this.users = new ActivitySketch(window, slices, width, depth, topK, clockMillis);
+        this.topK = topK;
+    }
+
+    public void recordThread(UUID threadId) {
+        threads.record(threadId);
+    }
+
+    public void recordUser(UUID userId) {
+        if (userId != null) {
+            users.record(userId);
+        }
+    }
+
+    public ActivitySketch threads() {
+        return threads;
+    }
+
+    public ActivitySketch users() {
+        return users;
+    }
+
+    /**
+     * Window totals, plus one gauge per rank of the top K. Ids are not used as tags, which would
+     * make the number of series unbounded; the endpoint tells which id holds a rank.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "thread", threads);
+        bind(registry, "user", users);
+    }
+
+    private void bind(MeterRegistry registry, String dimension, ActivitySketch sketch) {
+        Gauge.builder("messaging.activity.window.events", sketch, ActivitySketch::total)
+                .tag("dimension", dimension)
+                .description("Requests within the activity window")
+                .register(registry);
+        TopCache cache = new TopCache(sketch);
+        for (int rank = 1; rank <= topK; rank++) {
+            int index = rank - 1;
+            Gauge.builder("messaging.activity.top.events", cache, c -> {
+                        List<ActivitySketch.Count> top = c.top(clockMillis.getAsLong());
+                        return index < top.size() ? top.get(index).count() : 0;
+                    })
+                    .tag("dimension", dimension)
+                    .tag("rank", Integer.toString(rank))
+                    .description("Estimated requests within the activity window of the id at this rank")
+                    .register(registry);
+        }
+    }
+
+    private static LongSupplier monotonicMillis() {
+        long origin = System.nanoTime();
+        return () -> (System.nanoTime() - origin) / 1_000_000;
+    }
+
+    private static final class TopCache {
+
+        private final ActivitySketch sketch;
+        private volatile List<ActivitySketch.Count> top = List.of();
+        private volatile long expiresAt;
+
+        TopCache(ActivitySketch sketch) {
+            this.sketch = sketch;
+        }
+
+        List<ActivitySketch.Count> top(long now) {
+            if (now >= expiresAt) {
+                top = sketch.top();
+                expiresAt = now + TOP_CACHE_MILLIS;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.georgk.unfold.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A message as stored in an archive segment: fixed-width header followed by the UTF-8 content.
+ */
+record ArchivedMessage(UUID id, UUID senderId, long seq, String content, Instant createdAt) {
+
+    // seq, id, sender id, createdAt seconds + nanos, content length
+    private static final int HEADER_BYTES = 8 + 16 + 16 + 8 + 4 + 4;
+
+    int encodedSize() {
+        return HEADER_BYTES + content.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    void encode(ByteBuffer out) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        out.putLong(seq)
+                .putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+                .putLong(senderId.getMostSignificantBits()).putLong(senderId.getLeastSignificantBits())
+                .putLong(createdAt.getEpochSecond()).putInt(createdAt.getNano())
+                .putInt(text.length).put(text);
+    }
+
+    static ArchivedMessage decode(ByteBuffer in) {
+        long seq = in.getLong();
+        UUID id = new UUID(in.getLong(), in.getLong());
+        UUID senderId = new UUID(in.getLong(), in.getLong());
+        Instant createdAt = Instant.ofEpochSecond(in.getLong(), in.getInt());
+        byte[] text = new byte[in.getInt()];
+        in.get(text);
+        return new ArchivedMessage(id, senderId, seq, new String(text, StandardCharsets.UTF_8), createdAt);
+    }
+
+    /**
+     * Advances {@code in} past one record and returns its seq, without decoding the content.
+     */
+    static long skip(ByteBuffer in) {
+        long seq = in.getLong(in.position());
+        int textLength = in.getInt(in.position() + HEADER_BYTES - 4);
+        in.position(in.position() + HEADER_BYTES + textLength);
+        return seq;
+    }
+}
@@ -0,0 +1,121 @@
+package com.georgk.unfold.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves messages older than the retention horizon out of the {@code messages} table into the
+ * thread's archive segments. Works thread by thread in seq order, one batch at a time: the
+ * batch is appended and synced to disk first, then deleted from the database in the same
+ * transaction that advances {@code threads.archived_seq}. A crash in between leaves blocks
+ * above {@code archived_seq} behind, which the next run truncates before appending again.
+ * <p>
+ * Segments live on local disk, so exactly one node should run the archiver.
+ */
+@Component
+@ConditionalOnProperty(name = "messaging.archive.enabled", havingValue = "true")
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private record Target(UUID threadId, long archivedSeq, long expiredSeq) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final SegmentMessageArchive archive;
+    private final SegmentWriter writer;
+    private final Duration horizon;
+    private final int batchSize;
+
+    public MessageArchiver(JdbcTemplate jdbc,
+                           TransactionTemplate tx,
+                           SegmentMessageArchive archive,
+                           @Value("${messaging.archive.horizon:P365D}") Duration horizon,
+                           @Value("${messaging.archive.batch-size:5000}") int batchSize,
+                           @Value("${messaging.archive.block-messages:128}") int blockMessages,
+                           @Value("${messaging.archive.max-segment-bytes:67108864}") long maxSegmentBytes) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.archive = archive;
+        this.writer = new SegmentWriter(blockMessages, maxSegmentBytes);
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${messaging.archive.interval:PT1H}", fixedDelayString = "${messaging.archive.interval:PT1H}")
+    public void archiveExpired() {
+        long archived = archiveOlderThan(Instant.now().minus(horizon));
+        if (archived > 0) {
+            log.info("Archived {} messages older than {}", archived, horizon);
+        }
+    }
+
+    /**
+     * Archives, per thread, every message up to the highest seq created before {@code cutoff}.
+     * Returns the number of archived messages.
+     */
+    public long archiveOlderThan(Instant cutoff) {
+        List<Target> targets = jdbc.query("""
+                SELECT t.id, t.archived_seq, e.expired_seq
+                FROM (SELECT thread_id, max(seq) AS expired_seq FROM messages WHERE created_at < ? GROUP BY thread_id) e
+                JOIN threads t ON t.id = e.thread_id
+                WHERE e.expired_seq > t.archived_seq
+                """,
+                (rs, n) -> new Target(rs.getObject(1, UUID.class), rs.getLong(2), rs.getLong(3)),
+                Timestamp.from(cutoff));
+        long archived = 0;
+        for (Target target : targets) {
+            archived += archiveThread(target);
+        }
+        return archived;
+    }
+
+    private long archiveThread(Target target) {
+        long archived = 0;
+        long done = target.archivedSeq();
+        while (done < target.expiredSeq()) {
+            long from = done;
+            long to = Math.min(target.expiredSeq(), done + batchSize);
+            List<ArchivedMessage> batch = jdbc.query(
+                    "SELECT id, sender_id, seq, content, created_at FROM messages WHERE thread_id = ? AND seq > ? AND seq <= ? ORDER BY seq",
+                    (rs, n) -> new ArchivedMessage(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class), rs.getLong(3),
+                            rs.getString(4), rs.getTimestamp(5).toInstant()),
+                    target.threadId(), from, to);
+            try {
+                writer.append(archive.threadDirectory(target.threadId()), from, batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to archive thread " + target.threadId(), e);
+            }
+            Boolean committed = tx.execute(status -> {
+                // guards against a concurrent archiver having moved the watermark meanwhile
+                if (jdbc.update("UPDATE threads SET archived_seq = ? WHERE id = ? AND archived_seq = ?", to, target.threadId(), from) == 0) {
+                    return false;
+                }
+                jdbc.update("DELETE FROM messages WHERE thread_id = ? AND seq > ? AND seq <= ?", target.threadId(), from, to);
+                return true;
+            });
+            archive.evict(target.threadId());
+            if (!Boolean.TRUE.equals(committed)) {
+                log.warn("Archive watermark of thread {} moved concurrently, skipping it", target.threadId());
+                break;
+            }
+            archived += batch.size();
+            done = to;
+        }
+        return archived;
+    }
+}
@@ -0,0 +1,86 @@
+package com.georgk.unfold.archive;
+
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.repository.UserAccountRepository;
+import com.georgk.unfold.service.ArchiveUnavailableException;
+import com.georgk.unfold.service.MessageArchive;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * {@link MessageArchive} over per-thread segment files on local disk. Keeps a bounded,
+ * least-recently-used set of open {@link SegmentReader}s so that hot archived threads are
+ * served straight from their memory mappings.
+ */
+@Component
+public class SegmentMessageArchive implements MessageArchive {
+
+    private final Path root;
+    private final UserAccountRepository userRepo;
+    private final Map<UUID, SegmentReader> readers;
+
+    public SegmentMessageArchive(@Value("${messaging.archive.directory:./data/archive}") String root,
+                                 @Value("${messaging.archive.open-readers:256}") int openReaders,
+                                 UserAccountRepository userRepo) {
+        this.root = Path.of(root);
+        this.userRepo = userRepo;
+        this.readers = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, SegmentReader> eldest) {
+                return size() > openReaders;
+            }
+        });
+    }
+
+    @Override
+    public List<Message> read(MessageThread thread, long fromSeq, long toSeq) {
+        return reader(thread).read(fromSeq, toSeq).stream().map(m -> restore(thread, m)).toList();
+    }
+
+    @Override
+    public Optional<Message> find(MessageThread thread, UUID messageId) {
+        return reader(thread).find(messageId, thread.getArchivedSeq()).map(m -> restore(thread, m));
+    }
+
+    Path threadDirectory(UUID threadId) {
+        return root.resolve(threadId.toString());
+    }
+
+    /**
+     * Drops the cached reader of a thread after its segments changed.
+     */
+    void evict(UUID threadId) {
+        readers.remove(threadId);
+    }
+
+    private SegmentReader reader(MessageThread thread) {
+        UUID threadId = thread.getId();
+        SegmentReader reader = readers.get(threadId);
+        // a reader opened before the latest archiving batch does not cover the thread's watermark yet
+        if (reader == null || reader.lastSeq() < thread.getArchivedSeq()) {
+            try {
+                reader = SegmentReader.open(threadDirectory(threadId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open archive of thread " + threadId, e);
+            }
+            // segments are synced before the watermark moves, so falling short means they were lost
+            if (reader.lastSeq() < thread.getArchivedSeq()) {
+                throw new ArchiveUnavailableException("Archive of thread " + threadId + " ends at seq " + reader.lastSeq()
+                        + ", expected " + thread.getArchivedSeq());
+            }
+            readers.put(threadId, reader);
+        }
+        return reader;
+    }
+
+    private Message restore(MessageThread thread, ArchivedMessage m) {
+        // a reference is enough: assemblers only read the sender's id
+        return Message.restored(m.id(), thread, userRepo.getReferenceById(m.senderId()), m.seq(), m.content(), m.createdAt());
+    }
+}
@@ -0,0 +1,167 @@
+package com.georgk.unfold.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of one thread's segment files, as written by {@link SegmentWriter}. Data files
+ * are memory-mapped; the sparse indexes of all segments are loaded into one table of blocks,
+ * so locating the block of a seq is a binary search. Immutable and safe for concurrent use;
+ * open a new reader to see blocks appended after this one was opened.
+ */
+final class SegmentReader {
+
+    private static final SegmentReader EMPTY = new SegmentReader(new MappedByteBuffer[0], new long[0], new long[0], new int[0], new long[0], new int[0], new int[0]);
+
+    private final MappedByteBuffer[] segments;
+    // one element per block, ascending by seq
+    private final long[] firstSeqs;
+    private final long[] lastSeqs;
+    private final int[] segmentOf;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+
+    private SegmentReader(MappedByteBuffer[] segments, long[] firstSeqs, long[] lastSeqs, int[] segmentOf,
+                          long[] offsets, int[] compressedLengths, int[] rawLengths) {
+        this.segments = segments;
+        this.firstSeqs = firstSeqs;
+        this.lastSeqs = lastSeqs;
+        this.segmentOf = segmentOf;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+    }
+
+    static SegmentReader open(Path threadDir) throws IOException {
+        List<Path> files = SegmentWriter.segments(threadDir);
+        if (files.isEmpty()) {
+            return EMPTY;
+        }
+        MappedByteBuffer[] segments = new MappedByteBuffer[files.size()];
+        int capacity = 0;
+        List<ByteBuffer> indexes = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            try (FileChannel channel = FileChannel.open(files.get(i))) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Path index = SegmentWriter.indexFor(files.get(i));
+            ByteBuffer entries = Files.exists(index) ? ByteBuffer.wrap(Files.readAllBytes(index)) : ByteBuffer.allocate(0);
+            indexes.add(entries);
+            capacity += entries.remaining() / SegmentWriter.INDEX_ENTRY_BYTES;
+        }
+
+        long[] firstSeqs = new long[capacity];
+        long[] lastSeqs = new long[capacity];
+        int[] segmentOf = new int[capacity];
+        long[] offsets = new long[capacity];
+        int[] compressedLengths = new int[capacity];
+        int[] rawLengths = new int[capacity];
+        int blocks = 0;
+        for (int i = 0; i < segments.length; i++) {
+            ByteBuffer entries = indexes.get(i);
+            while (entries.remaining() >= SegmentWriter.INDEX_ENTRY_BYTES) {
+                firstSeqs[blocks] = entries.getLong();
+                lastSeqs[blocks] = entries.getLong();
+                offsets[blocks] = entries.getLong();
+                compressedLengths[blocks] = entries.getInt();
+                rawLengths[blocks] = entries.getInt();
+                segmentOf[blocks] = i;
+                if (offsets[blocks] + compressedLengths[blocks] <= segments[i].capacity()) {
+                    blocks++;
+                }
+            }
+        }
+        return new SegmentReader(segments, Arrays.copyOf(firstSeqs, blocks), Arrays.copyOf(lastSeqs, blocks),
+                Arrays.copyOf(segmentOf, blocks), Arrays.copyOf(offsets, blocks),
+                Arrays.copyOf(compressedLengths, blocks), Arrays.copyOf(rawLengths, blocks));
+    }
+
+    /**
+     * Highest seq covered by this reader, 0 if it has no blocks.
+     */
+    long lastSeq() {
+        return lastSeqs.length == 0 ? 0 : lastSeqs[lastSeqs.length - 1];
+    }
+
+    /**
+     * Messages with {@code fromSeq <= seq <= toSeq}, ascending.
+     */
+    List<ArchivedMessage> read(long fromSeq, long toSeq) {
+        List<ArchivedMessage> result = new ArrayList<>((int) Math.max(0, Math.min(toSeq - fromSeq + 1, 1024)));
+        // first block whose last seq reaches fromSeq
+        int block = Arrays.binarySearch(lastSeqs, fromSeq);
+        if (block < 0) {
+            block = -block - 1;
+        }
+        for (; block < firstSeqs.length && firstSeqs[block] <= toSeq; block++) {
+            ByteBuffer raw = inflate(block);
+            while (raw.hasRemaining()) {
+                int start = raw.position();
+                long seq = ArchivedMessage.skip(raw);
+                if (seq > toSeq) {
+                    break;
+                }
+                if (seq >= fromSeq) {
+                    raw.position(start);
+                    result.add(ArchivedMessage.decode(raw));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks a message up by id among the blocks holding seqs up to {@code maxSeq}. Ids are not
+     * indexed, so this decompresses the thread's blocks in turn; it serves the occasional direct
+     * link to an old message, while paging goes through {@link #read}.
+     */
+    Optional<ArchivedMessage> find(UUID id, long maxSeq) {
+        for (int block = 0; block < firstSeqs.length && firstSeqs[block] <= maxSeq; block++) {
+            ByteBuffer raw = inflate(block);
+            while (raw.hasRemaining()) {
+                ArchivedMessage message = ArchivedMessage.decode(raw);
+                if (message.id().equals(id) && message.seq() <= maxSeq) {
+                    return Optional.of(message);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private ByteBuffer inflate(int block) {
+        ByteBuffer compressed = segments[segmentOf[block]]
+                .slice((int) offsets[block], compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, raw.length - n);
+                if (inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (n != raw.length) {
+                throw new IllegalStateException("Corrupt archive block " + block + ": expected " + raw.length + " bytes, got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive block " + block, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+}
@@ -0,0 +1,170 @@
+package com.georgk.unfold.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Appends archived messages to the segment files of one thread directory:
+ * <ul>
+ *     <li>{@code <firstSeq>.seg} - Deflate-compressed blocks of encoded messages, written back to back</li>
+ *     <li>{@code <firstSeq>.idx} - sparse index, one fixed-size entry per block: first seq, last seq,
+ *     offset and compressed/raw length</li>
+ * </ul>
+ * Files are append-only. The only rewrite is {@link #truncateAfter}, which drops blocks left behind
+ * by an archiving run that wrote files but crashed before its database transaction committed.
+ */
+final class SegmentWriter {
+
+    static final String DATA_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    static final int INDEX_ENTRY_BYTES = 8 + 8 + 8 + 4 + 4;
+
+    private final int blockRecords;
+    private final long maxSegmentBytes;
+
+    SegmentWriter(int blockRecords, long maxSegmentBytes) {
+        this.blockRecords = blockRecords;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Appends {@code messages} (ascending, all above {@code committedSeq}) and forces them to disk.
+     * Blocks above {@code committedSeq} from an earlier, uncommitted run are discarded first.
+     */
+    void append(Path threadDir, long committedSeq, List<ArchivedMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(threadDir);
+        truncateAfter(threadDir, committedSeq);
+
+        List<Path> segments = segments(threadDir);
+        Path data = segments.isEmpty() || Files.size(segments.getLast()) >= maxSegmentBytes
+                ? threadDir.resolve(segmentName(messages.getFirst().seq()) + DATA_SUFFIX)
+                : segments.getLast();
+        try (FileChannel dataChannel = FileChannel.open(data, CREATE, WRITE, APPEND);
+             FileChannel indexChannel = FileChannel.open(indexFor(data), CREATE, WRITE, APPEND)) {
+            long offset = dataChannel.size();
+            Deflater deflater = new Deflater();
+            try {
+                for (int from = 0; from < messages.size(); from += blockRecords) {
+                    List<ArchivedMessage> block = messages.subList(from, Math.min(messages.size(), from + blockRecords));
+                    ByteBuffer raw = encode(block);
+                    int rawLength = raw.remaining();
+                    ByteBuffer compressed = deflate(deflater, raw);
+                    int compressedLength = compressed.remaining();
+                    while (compressed.hasRemaining()) {
+                        dataChannel.write(compressed);
+                    }
+                    ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES)
+                            .putLong(block.getFirst().seq()).putLong(block.getLast().seq())
+                            .putLong(offset).putInt(compressedLength).putInt(rawLength)
+                            .flip();
+                    while (entry.hasRemaining()) {
+                        indexChannel.write(entry);
+                    }
+                    offset += compressedLength;
+                }
+            } finally {
+                deflater.end();
+            }
+            // data before index, so an index entry never points at bytes that are not on disk
+            dataChannel.force(true);
+            indexChannel.force(true);
+        }
+    }
+
+    /**
+     * Drops every block whose first seq is above {@code committedSeq}, as well as torn index
+     * entries and data bytes not covered by the index.
+     */
+    void truncateAfter(Path threadDir, long committedSeq) throws IOException {
+        List<Path> segments = segments(threadDir);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Path data = segments.get(i);
+            Path index = indexFor(data);
+            ByteBuffer entries = Files.exists(index) ? ByteBuffer.wrap(Files.readAllBytes(index)) : ByteBuffer.allocate(0);
+            int kept = 0;
+            long dataEnd = 0;
+            while (entries.remaining() >= INDEX_ENTRY_BYTES) {
+                long firstSeq = entries.getLong();
+                entries.getLong(); // last seq
+                long offset = entries.getLong();
+                int compressedLength = entries.getInt();
+                entries.getInt(); // raw length
+                if (firstSeq > committedSeq) {
+                    break;
+                }
+                kept++;
+                dataEnd = offset + compressedLength;
+            }
+            if (kept == 0) {
+                Files.deleteIfExists(index);
+                Files.deleteIfExists(data);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(index, WRITE)) {
+                channel.truncate((long) kept * INDEX_ENTRY_BYTES);
+            }
+            try (FileChannel channel = FileChannel.open(data, WRITE)) {
+                channel.truncate(dataEnd);
+            }
+            return; // earlier segments were complete before this one was started
+        }
+    }
+
+    /**
+     * Data files of a thread directory, oldest first.
+     */
+    static List<Path> segments(Path threadDir) throws IOException {
+        if (!Files.isDirectory(threadDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(threadDir)) {
+            return new ArrayList<>(files.filter(p -> p.getFileName().toString().endsWith(DATA_SUFFIX)).sorted().toList());
+        }
+    }
+
+    static Path indexFor(Path data) {
+        String name = data.getFileName().toString();
+        return data.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    // zero-padded so that lexical order is seq order
+    private static String segmentName(long firstSeq) {
+        return String.format("%020d", firstSeq);
+    }
+
+    private static ByteBuffer encode(List<ArchivedMessage> block) {
+        int size = 0;
+        for (ArchivedMessage message : block) {
+            size += message.encodedSize();
+        }
+        ByteBuffer raw = ByteBuffer.allocate(size);
+        block.forEach(m -> m.encode(raw));
+        return raw.flip();
+    }
+
+    private static ByteBuffer deflate(Deflater deflater, ByteBuffer raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteBuffer out = ByteBuffer.allocate(raw.remaining() / 2 + 64);
+        while (!deflater.finished()) {
+            if (!out.hasRemaining()) {
+                out = ByteBuffer.allocate(out.capacity() * 2).put(out.flip());
+            }
+            deflater.deflate(out);
+        }
+        return out.flip();
+    }
+}
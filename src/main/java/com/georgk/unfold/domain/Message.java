@@ -1,6 +1,8 @@
 package com.georgk.unfold.domain;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.time.Instant;
 import java.util.UUID;
 
@@ -9,12 +11,15 @@ import java.util.UUID;
         indexes = {
                 @Index(name = "idx_messages_thread", columnList = "thread_id"),
                 @Index(name = "idx_messages_created_at", columnList = "createdAt")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_messages_thread_seq", columnNames = {"thread_id", "seq"}),
+                @UniqueConstraint(name = "uk_messages_idempotency_key", columnNames = {"sender_id", "idempotencyKey"})
         })
-public class Message {
+public class Message implements Persistable<UUID> {
 
     @Id
-    @GeneratedValue
-    private UUID id;
+    private UUID id; // assigned by the caller, so the thread summary can refer to it before the insert
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "thread_id", nullable = false)
@@ -24,9 +29,16 @@ public class Message {
     @JoinColumn(name = "sender_id", nullable = false)
     private UserAccount sender;
 
+    // NOT NULL is added by schema.sql, after it has numbered the messages of databases that predate seq
+    @Column(updatable = false)
+    private long seq; // 1-based position within the thread, gap-free
+
     @Column(nullable = false, length = 4000)
     private String content;
 
+    @Column(length = 100, updatable = false)
+    private String idempotencyKey; // client-supplied Idempotency-Key, unique per sender; null if none was sent
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -34,10 +46,32 @@ public class Message {
         // JPA
     }
 
-    public Message(MessageThread thread, UserAccount sender, String content) {
+    public Message(MessageThread thread, UserAccount sender, long seq, String content) {
+        this(UUID.randomUUID(), thread, sender, seq, content, null);
+    }
+
+    public Message(UUID id, MessageThread thread, UserAccount sender, long seq, String content, String idempotencyKey) {
+        this.id = id;
         this.thread = thread;
         this.sender = sender;
+        this.seq = seq;
         this.content = content;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Read-only copy of a message loaded outside JPA, from the archive or the reactive read path;
+     * never persisted.
+     */
+    public static Message restored(UUID id, MessageThread thread, UserAccount sender, long seq, String content, Instant createdAt) {
+        Message message = new Message();
+        message.id = id;
+        message.thread = thread;
+        message.sender = sender;
+        message.seq = seq;
+        message.content = content;
+        message.createdAt = createdAt;
+        return message;
     }
 
     @PrePersist
@@ -45,10 +79,17 @@ public class Message {
         this.createdAt = Instant.now();
     }
 
+    @Override
     public UUID getId() {
         return id;
     }
 
+    // the id is set before the first save, so only a missing createdAt tells a new message apart
+    @Override
+    public boolean isNew() {
+        return createdAt == null;
+    }
+
     public MessageThread getThread() {
         return thread;
     }
@@ -57,10 +98,18 @@ public class Message {
         return sender;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
     public String getContent() {
         return content;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -1,7 +1,10 @@
 package com.georgk.unfold.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.Instant;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.UUID;
@@ -17,6 +20,8 @@ import java.util.UUID;
         })
 public class MessageThread {
 
+    public static final int MESSAGE_PREVIEW_LENGTH = 140;
+
     @Id
     @GeneratedValue
     private UUID id;
@@ -31,6 +36,7 @@ public class MessageThread {
     @Column(length = 200)
     private String name; // optional name for GROUP
 
+    // write-only: memberships are read through paged queries, never by loading this collection
     @ManyToMany
     @JoinTable(
             name = "thread_participants",
@@ -38,9 +44,32 @@ public class MessageThread {
             inverseJoinColumns = @JoinColumn(name = "user_id"),
             uniqueConstraints = @UniqueConstraint(name = "uk_thread_participant", columnNames = {"thread_id", "user_id"})
     )
-
     private Set<UserAccount> participants = new LinkedHashSet<>();
 
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int participantCount;
+
+    // summary of the latest message (its seq doubles as the message count); maintained only in SQL
+    // by postMessage, see MessageThreadRepository#recordNewMessage
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long messageSeq;
+
+    @Column(insertable = false, updatable = false)
+    private UUID lastMessageId;
+
+    @Column(insertable = false, updatable = false)
+    private UUID lastMessageSenderId;
+
+    @Column(length = MESSAGE_PREVIEW_LENGTH, insertable = false, updatable = false)
+    private String lastMessagePreview;
+
+    // messages with seq <= archivedSeq live in the archive, not in the messages table; maintained by MessageArchiver
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long archivedSeq;
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -57,6 +86,26 @@ public class MessageThread {
         this.directKey = directKey;
     }
 
+    /**
+     * Read-only copy of a thread row loaded outside JPA, by the reactive read path; never persisted.
+     * Memberships and the direct key are not carried.
+     */
+    public static MessageThread restored(UUID id, ThreadType type, String name, int participantCount, long messageSeq,
+                                         UUID lastMessageId, UUID lastMessageSenderId, String lastMessagePreview,
+                                         long archivedSeq, Instant createdAt, Instant updatedAt) {
+        MessageThread thread = new MessageThread(type, name, null);
+        thread.id = id;
+        thread.participantCount = participantCount;
+        thread.messageSeq = messageSeq;
+        thread.lastMessageId = lastMessageId;
+        thread.lastMessageSenderId = lastMessageSenderId;
+        thread.lastMessagePreview = lastMessagePreview;
+        thread.archivedSeq = archivedSeq;
+        thread.createdAt = createdAt;
+        thread.updatedAt = updatedAt;
+        return thread;
+    }
+
     @PrePersist
     public void prePersist() {
         Instant now = Instant.now();
@@ -85,8 +134,32 @@ public class MessageThread {
         return name;
     }
 
-    public Set<UserAccount> getParticipants() {
-        return participants;
+    public int getParticipantCount() {
+        return participantCount;
+    }
+
+    public long getMessageSeq() {
+        return messageSeq;
+    }
+
+    public long getMessageCount() {
+        return messageSeq;
+    }
+
+    public UUID getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public UUID getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public long getArchivedSeq() {
+        return archivedSeq;
     }
 
     public Instant getCreatedAt() {
@@ -109,6 +182,14 @@ public class MessageThread {
         this.directKey = directKey;
     }
 
+    public void addParticipants(Collection<UserAccount> users) {
+        for (UserAccount user : users) {
+            if (participants.add(user)) {
+                participantCount++;
+            }
+        }
+    }
+
     public void touch() {
         this.updatedAt = Instant.now();
     }
@@ -28,6 +28,15 @@ public class UserAccount {
         this.username = username;
     }
 
+    /**
+     * Detached stand-in that carries only the id, for references loaded outside JPA; never persisted.
+     */
+    public static UserAccount reference(UUID id) {
+        UserAccount user = new UserAccount();
+        user.id = id;
+        return user;
+    }
+
     @PrePersist
     public void prePersist() {
         this.createdAt = Instant.now();
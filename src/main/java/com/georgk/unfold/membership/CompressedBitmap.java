@@ -0,0 +1,313 @@
+package com.georgk.unfold.membership;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the layout of Roaring bitmaps. Values are grouped into
+ * chunks by their high 16 bits, and each chunk keeps the low 16 bits either as a sorted array,
+ * while it holds at most {@value #ARRAY_MAX} values, or as a 65536-bit bitmap beyond that, so a
+ * chunk never takes more than 8 KiB. Intersections go chunk by chunk and skip chunks missing on
+ * either side. Not thread-safe.
+ */
+final class CompressedBitmap {
+
+    static final int ARRAY_MAX = 4096;
+
+    private static final int BITMAP_WORDS = 1 << 10;
+    // object header plus fields, and the array header; approximate, for the memory gauge only
+    private static final int OBJECT_BYTES = 16;
+    private static final int ARRAY_BYTES = 16;
+
+    private char[] keys;
+    private Chunk[] chunks;
+    private int size;
+
+    CompressedBitmap() {
+        this(new char[1], new Chunk[1], 0);
+    }
+
+    private CompressedBitmap(char[] keys, Chunk[] chunks, int size) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Adds {@code value}; returns false if it was already present.
+     */
+    boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                chunks = Arrays.copyOf(chunks, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(chunks, i, chunks, i + 1, size - i);
+            keys[i] = key;
+            chunks[i] = new ArrayChunk(new char[4], 0);
+            size++;
+        }
+        Chunk chunk = chunks[i];
+        int before = chunk.cardinality();
+        chunks[i] = chunk.add(low);
+        return chunks[i].cardinality() > before;
+    }
+
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return i >= 0 && chunks[i].contains((char) value);
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Values present in both bitmaps, as a new bitmap.
+     */
+    CompressedBitmap and(CompressedBitmap other) {
+        int capacity = Math.max(1, Math.min(size, other.size));
+        char[] resultKeys = new char[capacity];
+        Chunk[] resultChunks = new Chunk[capacity];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = chunks[i].and(other.chunks[j]);
+                if (chunk.cardinality() > 0) {
+                    resultKeys[n] = keys[i];
+                    resultChunks[n] = chunk;
+                    n++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CompressedBitmap(resultKeys, resultChunks, n);
+    }
+
+    /**
+     * All values in ascending order.
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality()];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            position = chunks[i].copyTo(keys[i] << 16, values, position);
+        }
+        return values;
+    }
+
+    /**
+     * Approximate heap footprint, including unused capacity.
+     */
+    long sizeInBytes() {
+        long bytes = OBJECT_BYTES + 2L * ARRAY_BYTES + keys.length * 2L + chunks.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += chunks[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private sealed interface Chunk permits ArrayChunk, BitmapChunk {
+
+        // may return a different chunk when the representation changes
+        Chunk add(char low);
+
+        boolean contains(char low);
+
+        int cardinality();
+
+        Chunk and(Chunk other);
+
+        int copyTo(int high, int[] values, int position);
+
+        long sizeInBytes();
+    }
+
+    private static final class ArrayChunk implements Chunk {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayChunk(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Chunk add(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                BitmapChunk bitmap = BitmapChunk.of(this);
+                bitmap.add(low);
+                return bitmap;
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayChunk array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayChunk(result, n);
+        }
+
+        @Override
+        public int copyTo(int high, int[] target, int position) {
+            for (int i = 0; i < cardinality; i++) {
+                target[position++] = high | values[i];
+            }
+            return position;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return OBJECT_BYTES + ARRAY_BYTES + values.length * 2L;
+        }
+    }
+
+    private static final class BitmapChunk implements Chunk {
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapChunk(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapChunk of(ArrayChunk array) {
+            BitmapChunk bitmap = new BitmapChunk(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < array.cardinality; i++) {
+                bitmap.add(array.values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        public Chunk add(char low) {
+            long bit = 1L << low;
+            int word = low >>> 6;
+            if ((words[word] & bit) == 0) {
+                words[word] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk array) {
+                return array.and(this);
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+                count += Long.bitCount(result[i]);
+            }
+            if (count > ARRAY_MAX) {
+                return new BitmapChunk(result, count);
+            }
+            char[] values = new char[count];
+            int n = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = result[i]; word != 0; word &= word - 1) {
+                    values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayChunk(values, count);
+        }
+
+        @Override
+        public int copyTo(int high, int[] target, int position) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    target[position++] = high | ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return position;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return OBJECT_BYTES + ARRAY_BYTES + BITMAP_WORDS * 8L;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.georgk.unfold.membership;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of group thread membership for finding the groups several users share. Each
+ * group thread gets a dense ordinal in creation order, and each user a {@link CompressedBitmap}
+ * of the ordinals of their groups, so shared groups are the intersection of a few bitmaps and
+ * never touch {@code thread_participants}.
+ * <p>
+ * Built from the database before the application takes requests, then extended as group threads
+ * are created. Groups created by other nodes only show up after a restart, so like the archive
+ * this suits a single application node.
+ */
+@Component
+public class SharedThreadIndex implements SmartInitializingSingleton, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedThreadIndex.class);
+
+    private static final int RESULT_FETCH_SIZE = 10_000;
+    // approximate heap cost of a map entry with its UUID key: user -> bitmap, thread -> ordinal
+    private static final int USER_ENTRY_BYTES = 80;
+    private static final int THREAD_ENTRY_BYTES = 100;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final List<UUID> threadIds = new ArrayList<>();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final Map<UUID, CompressedBitmap> users = new HashMap<>();
+    private long bitmapBytes;
+
+    public SharedThreadIndex(DataSource dataSource, TransactionTemplate tx) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(RESULT_FETCH_SIZE);
+        this.tx = tx;
+    }
+
+    /**
+     * Loads every group membership, ordered so that ordinals follow thread creation. Runs after
+     * the schema is in place and before the web server starts.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            // a transaction, so that the driver streams the rows in fetch-size batches
+            tx.executeWithoutResult(status -> jdbc.query("""
+                    SELECT t.id, tp.user_id
+                    FROM threads t
+                    JOIN thread_participants tp ON tp.thread_id = t.id
+                    WHERE t.type = 'GROUP'
+                    ORDER BY t.created_at, t.id
+                    """, rs -> {
+                int ordinal = ordinal(rs.getObject(1, UUID.class));
+                users.computeIfAbsent(rs.getObject(2, UUID.class), id -> new CompressedBitmap()).add(ordinal);
+            }));
+            bitmapBytes = users.values().stream().mapToLong(CompressedBitmap::sizeInBytes).sum();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} group threads of {} users in {}ms, ~{} KiB",
+                threadIds.size(), users.size(), (System.nanoTime() - start) / 1_000_000, memoryBytes() / 1024);
+    }
+
+    /**
+     * Adds a new group thread once the current transaction commits, or right away without one,
+     * so that a rolled back creation never shows up.
+     */
+    public void addGroupThread(UUID threadId, Collection<UUID> participantIds) {
+        List<UUID> members = List.copyOf(participantIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addNow(threadId, members);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addNow(threadId, members);
+            }
+        });
+    }
+
+    /**
+     * Page of the ids of the group threads all {@code userIds} are members of, most recently
+     * created first, together with the total count.
+     */
+    public Page<UUID> findShared(Collection<UUID> userIds, Pageable pageable) {
+        int[] shared;
+        List<UUID> content = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            shared = intersect(userIds).toArray();
+            int end = (int) Math.max(0, shared.length - pageable.getOffset());
+            for (int i = end - 1; i >= Math.max(0, end - pageable.getPageSize()); i--) {
+                content.add(threadIds.get(shared[i]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new PageImpl<>(content, pageable, shared.length);
+    }
+
+    /**
+     * Approximate heap footprint of the index.
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return bitmapBytes + (long) users.size() * USER_ENTRY_BYTES + (long) threadIds.size() * THREAD_ENTRY_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("messaging.membership.index.memory", this, SharedThreadIndex::memoryBytes)
+                .baseUnit("bytes")
+                .description("Approximate heap used by the shared-threads index")
+                .register(registry);
+        Gauge.builder("messaging.membership.index.threads", this, index -> index.count(index.threadIds))
+                .description("Group threads in the shared-threads index")
+                .register(registry);
+        Gauge.builder("messaging.membership.index.users", this, index -> index.count(index.users.keySet()))
+                .description("Users with at least one group thread in the shared-threads index")
+                .register(registry);
+    }
+
+    private void addNow(UUID threadId, List<UUID> members) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinal(threadId);
+            for (UUID userId : members) {
+                CompressedBitmap bitmap = users.get(userId);
+                if (bitmap == null) {
+                    bitmap = new CompressedBitmap();
+                    users.put(userId, bitmap);
+                } else {
+                    bitmapBytes -= bitmap.sizeInBytes();
+                }
+                bitmap.add(ordinal);
+                bitmapBytes += bitmap.sizeInBytes();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // a thread created while the index was being loaded may be added twice, and keeps its ordinal
+    private int ordinal(UUID threadId) {
+        Integer ordinal = ordinals.get(threadId);
+        if (ordinal == null) {
+            ordinal = threadIds.size();
+            threadIds.add(threadId);
+            ordinals.put(threadId, ordinal);
+        }
+        return ordinal;
+    }
+
+    // smallest bitmap first, so that intermediate results stay small
+    private CompressedBitmap intersect(Collection<UUID> userIds) {
+        List<CompressedBitmap> bitmaps = new ArrayList<>(userIds.size());
+        for (UUID userId : userIds) {
+            CompressedBitmap bitmap = users.get(userId);
+            if (bitmap == null) {
+                return new CompressedBitmap();
+            }
+            bitmaps.add(bitmap);
+        }
+        bitmaps.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+        CompressedBitmap result = bitmaps.get(0);
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result = result.and(bitmaps.get(i));
+        }
+        return result;
+    }
+
+    private int count(Collection<?> entries) {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
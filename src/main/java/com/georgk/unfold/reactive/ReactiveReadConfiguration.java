@@ -0,0 +1,76 @@
+package com.georgk.unfold.reactive;
+
+import com.georgk.unfold.service.MessageArchive;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking read path for the hottest read endpoints, active with the {@code reactive}
+ * profile. Reads go through an R2DBC pool of their own against the database of the JDBC
+ * datasource, which keeps serving all writes and the remaining reads.
+ * <p>
+ * The pool is not exposed as a {@code ConnectionFactory} bean on purpose: Spring Boot would
+ * otherwise add an R2DBC transaction manager next to the JPA one and run {@code schema.sql}
+ * through R2DBC instead of after Hibernate's schema update.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile(ReactiveReadConfiguration.PROFILE)
+public class ReactiveReadConfiguration {
+
+    public static final String PROFILE = "reactive";
+
+    private static final String POOL_NAME = "reactive-reads";
+
+    @Bean
+    ReactiveThreadReads reactiveThreadReads(JdbcConnectionDetails jdbc, MessageArchive archive,
+                                            @Value("${messaging.reactive.pool.initial-size:2}") int initialSize,
+                                            @Value("${messaging.reactive.pool.max-size:10}") int maxSize,
+                                            @Value("${messaging.reactive.pool.max-acquire-time:PT30S}") Duration maxAcquireTime) {
+        if (!jdbc.getJdbcUrl().startsWith("jdbc:postgresql:")) {
+            throw new IllegalStateException("The reactive read path needs a PostgreSQL datasource, got " + jdbc.getJdbcUrl());
+        }
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse("r2dbc:" + jdbc.getJdbcUrl().substring("jdbc:".length()))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, jdbc.getUsername());
+        if (jdbc.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, jdbc.getPassword());
+        }
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name(POOL_NAME)
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+        return new ReactiveThreadReads(pool, archive);
+    }
+
+    // r2dbc.pool.* gauges, tagged name=reactive-reads
+    @Bean
+    MeterBinder reactiveReadPoolMetrics(ReactiveThreadReads reads) {
+        return new ConnectionPoolMetrics(reads.pool(), POOL_NAME, Tags.empty());
+    }
+
+    @Bean
+    WebMvcRegistrations reactiveReadMappings() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+                return new ReactiveReadHandlerMapping();
+            }
+        };
+    }
+}
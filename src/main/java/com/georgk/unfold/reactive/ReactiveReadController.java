@@ -0,0 +1,104 @@
+package com.georgk.unfold.reactive;
+
+import com.georgk.unfold.activity.ActivityTracker;
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.reactive.ReactiveThreadReads.UserThread;
+import com.georgk.unfold.web.CompactMediaTypes;
+import com.georgk.unfold.web.FieldSelection;
+import com.georgk.unfold.web.assembler.MessageModelAssembler;
+import com.georgk.unfold.web.assembler.ThreadModelAssembler;
+import com.georgk.unfold.web.model.MessageModel;
+import com.georgk.unfold.web.model.ThreadModel;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Non-blocking versions of {@code GET /threads/{id}/messages}, {@code GET /threads/{id}/messages/{messageId}}
+ * and {@code GET /users/{id}/threads}, replacing the blocking handlers under the {@code reactive}
+ * profile. The request thread returns to the container as soon as the query is sent, and the
+ * response is written when the result arrives; representations are the same as on the JPA path.
+ */
+@RestController
+@Profile(ReactiveReadConfiguration.PROFILE)
+@RequestMapping(produces = {MediaTypes.HAL_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, CompactMediaTypes.SMILE_VALUE})
+public class ReactiveReadController {
+
+    private final ReactiveThreadReads reads;
+    private final MessageModelAssembler messageAssembler;
+    private final ThreadModelAssembler threadAssembler;
+    private final PagedResourcesAssembler<Message> messagePagedAssembler;
+    private final PagedResourcesAssembler<UserThread> threadPagedAssembler;
+    private final ActivityTracker activity;
+
+    public ReactiveReadController(ReactiveThreadReads reads,
+                                  MessageModelAssembler messageAssembler,
+                                  ThreadModelAssembler threadAssembler,
+                                  PagedResourcesAssembler<Message> messagePagedAssembler,
+                                  PagedResourcesAssembler<UserThread> threadPagedAssembler,
+                                  ActivityTracker activity) {
+        this.reads = reads;
+        this.messageAssembler = messageAssembler;
+        this.threadAssembler = threadAssembler;
+        this.messagePagedAssembler = messagePagedAssembler;
+        this.threadPagedAssembler = threadPagedAssembler;
+        this.activity = activity;
+    }
+
+    @GetMapping("/threads/{id}/messages")
+    public Mono<PagedModel<MessageModel>> listMessages(@PathVariable UUID id,
+                                                       @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
+                                                       @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        Pageable pageable = PageRequest.of(page, size);
+        activity.recordThread(id);
+        return reads.getMessages(id, pageable).map(onRequest(result -> messagePagedAssembler.toModel(result, messageAssembler)));
+    }
+
+    @GetMapping("/threads/{threadId}/messages/{messageId}")
+    public Mono<MessageModel> getMessage(@PathVariable UUID threadId, @PathVariable UUID messageId) {
+        activity.recordThread(threadId);
+        return reads.getMessage(threadId, messageId).map(onRequest(messageAssembler::toModel));
+    }
+
+    @GetMapping("/users/{id}/threads")
+    public Mono<PagedModel<ThreadModel>> listThreadsForUser(@PathVariable UUID id,
+                                                            @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
+                                                            @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        Pageable pageable = PageRequest.of(page, size);
+        activity.recordUser(id);
+        return reads.getThreadsForUser(id, pageable).map(onRequest(result ->
+                threadPagedAssembler.toModel(result, entry -> threadAssembler.toModel(entry.thread(), entry.lastReadSeq()))));
+    }
+
+    /**
+     * Runs {@code assembly} with the current request bound to the thread it runs on. Assemblers
+     * and link builders read the request (base URI, {@code fields}), but results arrive on a
+     * driver thread, after the servlet has already released the request attributes of the
+     * original dispatch; the request itself stays valid until the response is written.
+     */
+    private static <T, R> Function<T, R> onRequest(Function<T, R> assembly) {
+        ServletRequestAttributes current = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = current.getRequest();
+        FieldSelection.current(); // parsed while the attributes are active, then read back from the request
+        return value -> {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            try {
+                return assembly.apply(value);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        };
+    }
+}
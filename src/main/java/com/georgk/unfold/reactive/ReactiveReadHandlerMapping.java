@@ -0,0 +1,37 @@
+package com.georgk.unfold.reactive;
+
+import org.springframework.core.MethodIntrospector;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Request mapping that lets {@link ReactiveReadController} take over endpoints of the blocking
+ * controllers: a handler method whose mapping equals one of the reactive controller's is left
+ * unmapped, where the default mapping would reject the duplicate. Links keep pointing at the
+ * blocking controllers' methods, which still describe the same URLs.
+ */
+class ReactiveReadHandlerMapping extends RequestMappingHandlerMapping {
+
+    private Set<RequestMappingInfo> replaced;
+
+    @Override
+    protected RequestMappingInfo getMappingForMethod(Method method, Class<?> handlerType) {
+        RequestMappingInfo info = super.getMappingForMethod(method, handlerType);
+        if (info == null || ReactiveReadController.class.isAssignableFrom(handlerType)) {
+            return info;
+        }
+        return replacedMappings().contains(info) ? null : info;
+    }
+
+    private Set<RequestMappingInfo> replacedMappings() {
+        if (replaced == null) {
+            replaced = new HashSet<>(MethodIntrospector.selectMethods(ReactiveReadController.class,
+                    (MethodIntrospector.MetadataLookup<RequestMappingInfo>) m -> super.getMappingForMethod(m, ReactiveReadController.class)).values());
+        }
+        return replaced;
+    }
+}
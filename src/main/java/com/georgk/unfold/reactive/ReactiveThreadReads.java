@@ -0,0 +1,207 @@
+package com.georgk.unfold.reactive;
+
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.domain.ThreadType;
+import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.service.MessageArchive;
+import com.georgk.unfold.service.NotFoundException;
+import com.georgk.unfold.service.ThreadService;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Readable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Non-blocking counterparts of the hottest {@link ThreadService} reads, over R2DBC. They return
+ * the same read-only entities, so both paths share assemblers and representations, and they
+ * follow the same rules: message pages are seq ranges split between the archive and the
+ * database, and a message id falls back to the archive. Archive reads touch local files and run
+ * on the bounded elastic scheduler; everything else runs on the driver's event loop. Owns its
+ * connection pool and disposes it on {@link #close}.
+ */
+public class ReactiveThreadReads implements AutoCloseable {
+
+    private static final int PAGE_ATTEMPTS = 3;
+
+    private static final String THREAD_COLUMNS = """
+            t.id, t.type, t.name, t.participant_count, t.message_seq, t.last_message_id, t.last_message_sender_id,
+            t.last_message_preview, t.archived_seq, t.created_at, t.updated_at""";
+
+    private static final String SELECT_THREAD = "SELECT " + THREAD_COLUMNS + " FROM threads t WHERE t.id = :id";
+
+    private static final String SELECT_MESSAGES = """
+            SELECT id AS message_id, sender_id, seq, content, created_at AS message_created_at
+            FROM messages
+            WHERE thread_id = :threadId AND seq BETWEEN :fromSeq AND :toSeq
+            ORDER BY seq
+            """;
+
+    private static final String SELECT_MESSAGE = """
+            SELECT m.id AS message_id, m.sender_id, m.seq, m.content, m.created_at AS message_created_at, %s
+            FROM messages m
+            JOIN threads t ON t.id = m.thread_id
+            WHERE m.id = :id AND m.thread_id = :threadId
+            """.formatted(THREAD_COLUMNS);
+
+    private static final String SELECT_USER_THREADS = """
+            SELECT tp.last_read_seq, %s
+            FROM thread_participants tp
+            JOIN threads t ON t.id = tp.thread_id
+            WHERE tp.user_id = :userId
+            ORDER BY t.updated_at DESC, t.id
+            LIMIT :limit OFFSET :offset
+            """.formatted(THREAD_COLUMNS);
+
+    private static final String COUNT_USER_THREADS = "SELECT count(*) FROM thread_participants WHERE user_id = :userId";
+
+    /**
+     * A thread of a user's inbox together with the user's read cursor in it.
+     */
+    public record UserThread(MessageThread thread, long lastReadSeq) {}
+
+    private final ConnectionPool pool;
+    private final DatabaseClient db;
+    private final MessageArchive archive;
+
+    public ReactiveThreadReads(ConnectionPool pool, MessageArchive archive) {
+        this.pool = pool;
+        this.db = DatabaseClient.create(pool);
+        this.archive = archive;
+    }
+
+    public Mono<MessageThread> getThread(UUID id) {
+        return findThread(id).switchIfEmpty(Mono.error(() -> new NotFoundException("Thread not found: " + id)));
+    }
+
+    /**
+     * Messages of the thread in seq order, see {@link ThreadService#getMessages}. The thread and its
+     * messages are separate queries outside a transaction; seqs are gap-free, so a short page means
+     * the archiver moved part of the range after the thread was read, and the page is read again.
+     */
+    public Mono<Page<Message>> getMessages(UUID threadId, Pageable pageable) {
+        return Mono.defer(() -> readMessages(threadId, pageable)).repeatWhenEmpty(PAGE_ATTEMPTS - 1, attempts -> attempts);
+    }
+
+    // empty if the page came out short
+    private Mono<Page<Message>> readMessages(UUID threadId, Pageable pageable) {
+        return getThread(threadId).flatMap(thread -> {
+            long total = thread.getMessageSeq();
+            long fromSeq = pageable.getOffset() + 1;
+            long toSeq = Math.min(total, pageable.getOffset() + pageable.getPageSize());
+            if (fromSeq > toSeq) {
+                return Mono.just(new PageImpl<>(List.of(), pageable, total));
+            }
+            long archivedSeq = thread.getArchivedSeq();
+            Flux<Message> archived = fromSeq > archivedSeq ? Flux.empty()
+                    : Mono.fromCallable(() -> archive.read(thread, fromSeq, Math.min(toSeq, archivedSeq)))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMapIterable(messages -> messages);
+            Flux<Message> live = toSeq <= archivedSeq ? Flux.empty()
+                    : db.sql(SELECT_MESSAGES)
+                    .bind("threadId", threadId)
+                    .bind("fromSeq", Math.max(fromSeq, archivedSeq + 1))
+                    .bind("toSeq", toSeq)
+                    .map(row -> message(row, thread))
+                    .all();
+            return Flux.concat(archived, live).collectList()
+                    .filter(content -> content.size() == toSeq - fromSeq + 1)
+                    .map(content -> new PageImpl<>(content, pageable, total));
+        });
+    }
+
+    public Mono<Message> getMessage(UUID threadId, UUID messageId) {
+        return db.sql(SELECT_MESSAGE)
+                .bind("id", messageId)
+                .bind("threadId", threadId)
+                .map(row -> message(row, thread(row)))
+                .one()
+                .switchIfEmpty(Mono.defer(() -> findThread(threadId)
+                        .filter(thread -> thread.getArchivedSeq() > 0)
+                        .flatMap(thread -> Mono.fromCallable(() -> archive.find(thread, messageId))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(Mono::justOrEmpty))))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Message not found in thread")));
+    }
+
+    /**
+     * Threads of the user, most recently updated first, with the user's read cursor in each. The
+     * count query is skipped when the page itself shows where the list ends.
+     */
+    public Mono<Page<UserThread>> getThreadsForUser(UUID userId, Pageable pageable) {
+        Mono<List<UserThread>> content = db.sql(SELECT_USER_THREADS)
+                .bind("userId", userId)
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset())
+                .map(row -> new UserThread(thread(row), row.get("last_read_seq", Long.class)))
+                .all()
+                .collectList();
+        return requireUser(userId).then(content).flatMap(threads -> {
+            if ((pageable.getOffset() == 0 || !threads.isEmpty()) && threads.size() < pageable.getPageSize()) {
+                return Mono.just(new PageImpl<>(threads, pageable, pageable.getOffset() + threads.size()));
+            }
+            return db.sql(COUNT_USER_THREADS)
+                    .bind("userId", userId)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(total -> new PageImpl<>(threads, pageable, total));
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+
+    ConnectionPool pool() {
+        return pool;
+    }
+
+    private Mono<MessageThread> findThread(UUID id) {
+        return db.sql(SELECT_THREAD).bind("id", id).map(ReactiveThreadReads::thread).one();
+    }
+
+    private Mono<Void> requireUser(UUID id) {
+        return db.sql("SELECT 1 FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(row -> true)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("User not found: " + id)))
+                .then();
+    }
+
+    private static MessageThread thread(Readable row) {
+        return MessageThread.restored(
+                row.get("id", UUID.class),
+                ThreadType.valueOf(row.get("type", String.class)),
+                row.get("name", String.class),
+                row.get("participant_count", Integer.class),
+                row.get("message_seq", Long.class),
+                row.get("last_message_id", UUID.class),
+                row.get("last_message_sender_id", UUID.class),
+                row.get("last_message_preview", String.class),
+                row.get("archived_seq", Long.class),
+                row.get("created_at", Instant.class),
+                row.get("updated_at", Instant.class));
+    }
+
+    // message columns are aliased where they would clash with the thread's in a join
+    private static Message message(Readable row, MessageThread thread) {
+        return Message.restored(
+                row.get("message_id", UUID.class),
+                thread,
+                UserAccount.reference(row.get("sender_id", UUID.class)),
+                row.get("seq", Long.class),
+                row.get("content", String.class),
+                row.get("message_created_at", Instant.class));
+    }
+}
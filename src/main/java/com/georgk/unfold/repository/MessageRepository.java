@@ -1,19 +1,87 @@
 package com.georgk.unfold.repository;
 
 import com.georgk.unfold.domain.Message;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     @EntityGraph(attributePaths = {"sender", "thread"})
-    Page<Message> findByThread_IdOrderByCreatedAtAsc(UUID threadId, Pageable pageable);
+    List<Message> findByThread_IdAndSeqBetweenOrderBySeqAsc(UUID threadId, long fromSeq, long toSeq);
 
     @EntityGraph(attributePaths = {"sender", "thread"})
     Optional<Message> findByIdAndThread_Id(UUID id, UUID threadId);
+
+    @EntityGraph(attributePaths = {"sender", "thread"})
+    Optional<Message> findBySender_IdAndIdempotencyKey(UUID senderId, String idempotencyKey);
+
+    @EntityGraph(attributePaths = {"sender", "thread"})
+    List<Message> findByIdIn(Collection<UUID> ids);
+
+    /**
+     * Ids of the messages in threads of {@code userId} that are not visible in snapshot
+     * {@code since}, at most the latest {@code limit} per thread. New messages are a suffix of
+     * each thread's seq range, so every thread costs one short range scan of its seq index.
+     * Rows without an xid predate change tracking and count as frozen, see schema.sql.
+     */
+    @Query(value = """
+            SELECT m.id
+            FROM thread_participants tp
+            JOIN threads t ON t.id = tp.thread_id
+            JOIN LATERAL (SELECT id FROM messages
+                          WHERE thread_id = t.id AND seq > t.message_seq - :limit
+                            AND NOT pg_visible_in_snapshot(COALESCE(created_xid, CAST('2' AS xid8)), CAST(:since AS pg_snapshot))) m ON true
+            WHERE tp.user_id = :userId
+              AND NOT pg_visible_in_snapshot(COALESCE(t.change_xid, CAST('2' AS xid8)), CAST(:since AS pg_snapshot))
+            """, nativeQuery = true)
+    List<UUID> findNewMessageIds(@Param("userId") UUID userId, @Param("since") String since, @Param("limit") int limit);
+
+    interface SearchHit {
+        UUID getId();
+
+        float getRank();
+    }
+
+    /**
+     * Ranked full-text matches across every thread {@code userId} participates in, keyset-paged
+     * on (rank, id) strictly below the given cursor.
+     */
+    @Query(value = """
+            SELECT hit.id, hit.rank
+            FROM (SELECT m.id, ts_rank(m.search_vector, q) AS rank
+                  FROM websearch_to_tsquery('english', :query) q,
+                       messages m
+                       JOIN thread_participants tp ON tp.thread_id = m.thread_id AND tp.user_id = :userId
+                  WHERE m.search_vector @@ q) hit
+            WHERE (hit.rank, hit.id) < (CAST(:afterRank AS real), CAST(:afterId AS uuid))
+            ORDER BY hit.rank DESC, hit.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<SearchHit> searchForUser(@Param("userId") UUID userId, @Param("query") String query,
+                                  @Param("afterRank") float afterRank, @Param("afterId") UUID afterId,
+                                  @Param("limit") int limit);
+
+    /**
+     * Ranked full-text matches within one thread, keyset-paged on (rank, id) strictly below the given cursor.
+     */
+    @Query(value = """
+            SELECT hit.id, hit.rank
+            FROM (SELECT m.id, ts_rank(m.search_vector, q) AS rank
+                  FROM websearch_to_tsquery('english', :query) q,
+                       messages m
+                  WHERE m.thread_id = :threadId AND m.search_vector @@ q) hit
+            WHERE (hit.rank, hit.id) < (CAST(:afterRank AS real), CAST(:afterId AS uuid))
+            ORDER BY hit.rank DESC, hit.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<SearchHit> searchInThread(@Param("threadId") UUID threadId, @Param("query") String query,
+                                   @Param("afterRank") float afterRank, @Param("afterId") UUID afterId,
+                                   @Param("limit") int limit);
 }
@@ -1,24 +1,146 @@
 package com.georgk.unfold.repository;
 
 import com.georgk.unfold.domain.MessageThread;
-import com.georgk.unfold.domain.ThreadType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface MessageThreadRepository extends JpaRepository<MessageThread, UUID> {
 
-    @Override
-    @EntityGraph(attributePaths = {"participants"})
-    Optional<MessageThread> findById(UUID id);
+    @Query("select t.id from MessageThread t where t.directKey = :directKey")
+    Optional<UUID> findIdByDirectKey(@Param("directKey") String directKey);
 
-    @EntityGraph(attributePaths = {"participants"})
-    Optional<MessageThread> findByTypeAndDirectKey(ThreadType type, String directKey);
+    /**
+     * Creates the DIRECT thread for {@code directKey} together with its two participant rows and
+     * returns its id, or returns nothing if the thread already exists. Concurrent callers for the
+     * same pair serialize on {@code uk_threads_direct_key}; the losers get nothing back and find
+     * the winner's row with {@link #findIdByDirectKey}.
+     */
+    @Query(value = """
+            WITH t AS (
+                INSERT INTO threads (id, type, direct_key, participant_count, created_at, updated_at)
+                VALUES (gen_random_uuid(), 'DIRECT', :directKey, 2, now(), now())
+                ON CONFLICT ON CONSTRAINT uk_threads_direct_key DO NOTHING
+                RETURNING id
+            ), p AS (
+                INSERT INTO thread_participants (thread_id, user_id)
+                SELECT t.id, u.id FROM t CROSS JOIN (VALUES (CAST(:user1 AS uuid)), (CAST(:user2 AS uuid))) AS u(id)
+            )
+            SELECT id FROM t
+            """, nativeQuery = true)
+    Optional<UUID> insertDirectThread(@Param("directKey") String directKey, @Param("user1") UUID user1, @Param("user2") UUID user2);
 
-    @EntityGraph(attributePaths = {"participants"})
     Page<MessageThread> findDistinctByParticipants_IdOrderByUpdatedAtDesc(UUID userId, Pageable pageable);
+
+    @Query(value = "select exists(select 1 from thread_participants where thread_id = :threadId and user_id = :userId)",
+            nativeQuery = true)
+    boolean isParticipant(@Param("threadId") UUID threadId, @Param("userId") UUID userId);
+
+    /**
+     * Takes the same row lock as {@link #recordNewMessage} ahead of it, so a post can check for an
+     * earlier post with its idempotency key once every concurrent post to the thread has committed.
+     */
+    @Query(value = "SELECT id FROM threads WHERE id = :threadId FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<UUID> lockForNewMessage(@Param("threadId") UUID threadId);
+
+    /**
+     * Atomically assigns the next message sequence number of the thread, marks it as updated and
+     * records the new message in the thread summary, all in one row update. The row lock taken here
+     * serializes concurrent posts to the same thread until commit.
+     */
+    @Query(value = """
+            UPDATE threads
+            SET message_seq = message_seq + 1, updated_at = now(),
+                last_message_id = :messageId, last_message_sender_id = :senderId, last_message_preview = :preview,
+                change_xid = pg_current_xact_id()
+            WHERE id = :threadId
+            RETURNING message_seq
+            """, nativeQuery = true)
+    long recordNewMessage(@Param("threadId") UUID threadId, @Param("messageId") UUID messageId,
+                          @Param("senderId") UUID senderId, @Param("preview") String preview);
+
+    /**
+     * Moves the participant's read cursor forward to {@code seq}, clamped to the latest message;
+     * never moves it backwards. Returns 0 if the user is not a participant of the thread.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE thread_participants tp
+            SET last_read_seq = GREATEST(tp.last_read_seq, LEAST(:seq, t.message_seq)),
+                change_xid = CASE WHEN LEAST(:seq, t.message_seq) > tp.last_read_seq THEN pg_current_xact_id() ELSE tp.change_xid END
+            FROM threads t
+            WHERE t.id = tp.thread_id AND tp.thread_id = :threadId AND tp.user_id = :userId
+            """, nativeQuery = true)
+    int advanceReadCursor(@Param("threadId") UUID threadId, @Param("userId") UUID userId, @Param("seq") long seq);
+
+    interface ReadCursor {
+        UUID getThreadId();
+
+        long getLastReadSeq();
+    }
+
+    @Query(value = "select thread_id as threadId, last_read_seq as lastReadSeq from thread_participants where user_id = :userId and thread_id in (:threadIds)",
+            nativeQuery = true)
+    List<ReadCursor> findReadCursors(@Param("userId") UUID userId, @Param("threadIds") Collection<UUID> threadIds);
+
+    interface SyncPosition {
+        /**
+         * System identifier and timeline of the database cluster, which change when the cluster is
+         * replaced, restored from a backup or failed over, and with them the meaning of its xids.
+         */
+        String getCluster();
+
+        /**
+         * Snapshot of the current transaction, in the text form of {@code pg_snapshot}.
+         */
+        String getSnapshot();
+    }
+
+    @Query(value = """
+            SELECT CAST(s.system_identifier AS text) || '-' || CAST(c.timeline_id AS text) AS cluster,
+                   CAST(pg_current_snapshot() AS text) AS snapshot
+            FROM pg_control_system() s, pg_control_checkpoint() c
+            """, nativeQuery = true)
+    SyncPosition currentSyncPosition();
+
+    interface ThreadChange {
+        UUID getThreadId();
+
+        long getLastReadSeq();
+
+        /**
+         * Highest seq of the thread that was visible in the earlier snapshot; archived messages count as visible.
+         */
+        long getSyncedSeq();
+    }
+
+    /**
+     * Threads of {@code userId} whose summary or membership (including the read cursor) changed
+     * in a transaction not visible in snapshot {@code since}. Reads the user's memberships plus,
+     * per changed thread, the index entries of its new messages; the rest of the history is not
+     * touched, since messages of a thread commit in seq order. Rows without an xid predate change
+     * tracking and count as frozen, see schema.sql.
+     */
+    @Query(value = """
+            SELECT tp.thread_id AS threadId, tp.last_read_seq AS lastReadSeq,
+                   COALESCE((SELECT m.seq FROM messages m
+                             WHERE m.thread_id = tp.thread_id
+                               AND pg_visible_in_snapshot(COALESCE(m.created_xid, CAST('2' AS xid8)), CAST(:since AS pg_snapshot))
+                             ORDER BY m.seq DESC
+                             LIMIT 1), t.archived_seq) AS syncedSeq
+            FROM thread_participants tp
+            JOIN threads t ON t.id = tp.thread_id
+            WHERE tp.user_id = :userId
+              AND (NOT pg_visible_in_snapshot(COALESCE(t.change_xid, CAST('2' AS xid8)), CAST(:since AS pg_snapshot))
+                   OR NOT pg_visible_in_snapshot(COALESCE(tp.change_xid, CAST('2' AS xid8)), CAST(:since AS pg_snapshot)))
+            """, nativeQuery = true)
+    List<ThreadChange> findChangesSince(@Param("userId") UUID userId, @Param("since") String since);
 }
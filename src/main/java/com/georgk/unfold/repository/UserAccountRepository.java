@@ -1,11 +1,19 @@
 package com.georgk.unfold.repository;
 
 import com.georgk.unfold.domain.UserAccount;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserAccountRepository extends JpaRepository<UserAccount, UUID> {
     Optional<UserAccount> findByUsername(String username);
+
+    @Query(value = "select p from MessageThread t join t.participants p where t.id = :threadId order by p.id",
+            countQuery = "select cast(t.participantCount as Long) from MessageThread t where t.id = :threadId")
+    Page<UserAccount> findParticipants(@Param("threadId") UUID threadId, Pageable pageable);
 }
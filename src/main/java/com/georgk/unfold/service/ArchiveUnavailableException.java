@@ -0,0 +1,7 @@
+package com.georgk.unfold.service;
+
+public class ArchiveUnavailableException extends RuntimeException {
+    public ArchiveUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,28 @@
+package com.georgk.unfold.service;
+
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.domain.MessageThread;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Read access to messages that were moved out of the database. A thread's archived messages
+ * are exactly those with {@code seq <= thread.getArchivedSeq()}. Returned messages are detached,
+ * read-only copies.
+ */
+public interface MessageArchive {
+
+    /**
+     * Archived messages of the thread with {@code fromSeq <= seq <= toSeq}, ascending by seq.
+     *
+     * @throws ArchiveUnavailableException if the archive does not hold the thread's messages up to its archived seq
+     */
+    List<Message> read(MessageThread thread, long fromSeq, long toSeq);
+
+    /**
+     * @throws ArchiveUnavailableException if the archive does not hold the thread's messages up to its archived seq
+     */
+    Optional<Message> find(MessageThread thread, UUID messageId);
+}
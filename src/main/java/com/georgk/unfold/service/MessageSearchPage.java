@@ -0,0 +1,14 @@
+package com.georgk.unfold.service;
+
+import com.georgk.unfold.domain.Message;
+
+import java.util.List;
+
+/**
+ * One page of ranked search results, best match first.
+ *
+ * @param messages   matching messages of this page
+ * @param nextCursor opaque cursor for the following page; null when this is the last page
+ */
+public record MessageSearchPage(List<Message> messages, String nextCursor) {
+}
@@ -4,33 +4,60 @@ import com.georgk.unfold.domain.Message;
 import com.georgk.unfold.domain.MessageThread;
 import com.georgk.unfold.domain.ThreadType;
 import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.membership.SharedThreadIndex;
 import com.georgk.unfold.repository.MessageRepository;
 import com.georgk.unfold.repository.MessageThreadRepository;
 import com.georgk.unfold.repository.UserAccountRepository;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Transactional
 public class ThreadService {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+    // column lengths, counted in characters like PostgreSQL does
+    private static final int MAX_USERNAME_LENGTH = 100;
+    private static final int MAX_GROUP_NAME_LENGTH = 200;
+    private static final int MAX_CONTENT_LENGTH = 4000;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_SYNC_MESSAGES_PER_THREAD = 100;
+    private static final int MAX_SHARED_WITH = 10;
+    // a snapshot in which no transaction is visible, so that a first sync sees every thread
+    private static final String INITIAL_SNAPSHOT = "1:1:";
+    // "<cluster>/<snapshot>", see MessageThreadRepository.SyncPosition
+    private static final Pattern SYNC_TOKEN = Pattern.compile("(-?\\d{1,20}-\\d{1,10})/(\\d{1,20}:\\d{1,20}:(\\d{1,20}(,\\d{1,20})*)?)");
+
     private final UserAccountRepository userRepo;
     private final MessageThreadRepository threadRepo;
     private final MessageRepository messageRepo;
+    private final MessageArchive archive;
+    private final SharedThreadIndex sharedThreads;
 
-    public ThreadService(UserAccountRepository userRepo, MessageThreadRepository threadRepo, MessageRepository messageRepo) {
+    public ThreadService(UserAccountRepository userRepo, MessageThreadRepository threadRepo, MessageRepository messageRepo,
+                         MessageArchive archive, SharedThreadIndex sharedThreads) {
         this.userRepo = userRepo;
         this.threadRepo = threadRepo;
         this.messageRepo = messageRepo;
+        this.archive = archive;
+        this.sharedThreads = sharedThreads;
     }
 
     public UserAccount createUser(String username) {
         Objects.requireNonNull(username, "username");
+        if (characters(username) > MAX_USERNAME_LENGTH) {
+            throw new BadRequestException("Username must be at most " + MAX_USERNAME_LENGTH + " characters");
+        }
         userRepo.findByUsername(username).ifPresent(u -> {
             throw new BadRequestException("Username already exists: " + username);
         });
@@ -51,71 +78,341 @@ public class ThreadService {
         if (Objects.equals(user1, user2)) {
             throw new BadRequestException("Direct thread requires two distinct users");
         }
-        UserAccount u1 = getUser(user1);
-        UserAccount u2 = getUser(user2);
+        getUser(user1); // ensure exists
+        getUser(user2); // ensure exists
 
-        String directKey = normalizeDirectKey(user1, user2);
-        Optional<MessageThread> existing = threadRepo.findByTypeAndDirectKey(ThreadType.DIRECT, directKey);
-        if (existing.isPresent()) {
-            return existing.get();
-        }
-        MessageThread thread = new MessageThread(ThreadType.DIRECT, null, directKey);
-        thread.getParticipants().add(u1);
-        thread.getParticipants().add(u2);
-        return threadRepo.save(thread);
+        // most calls find an existing thread; only a miss takes the insert path
+        String directKey = directKey(user1, user2);
+        UUID threadId = threadRepo.findIdByDirectKey(directKey)
+                .or(() -> threadRepo.insertDirectThread(directKey, user1, user2))
+                // a concurrent call created it first; its row is committed by the time the insert returns
+                .or(() -> threadRepo.findIdByDirectKey(directKey))
+                .orElseThrow();
+        return getThread(threadId);
     }
 
     public MessageThread createGroupThread(Collection<UUID> participantIds, String name) {
         if (participantIds == null || participantIds.size() < 3) {
             throw new BadRequestException("Group thread requires at least 3 participants");
         }
-        Set<UserAccount> users = participantIds.stream().map(this::getUser).collect(Collectors.toCollection(LinkedHashSet::new));
+        if (name != null && characters(name) > MAX_GROUP_NAME_LENGTH) {
+            throw new BadRequestException("Group name must be at most " + MAX_GROUP_NAME_LENGTH + " characters");
+        }
+        Set<UUID> ids = new LinkedHashSet<>(participantIds);
+        List<UserAccount> users = userRepo.findAllById(ids);
+        if (users.size() < ids.size()) {
+            users.forEach(u -> ids.remove(u.getId()));
+            throw new NotFoundException("User not found: " + ids.iterator().next());
+        }
         MessageThread thread = new MessageThread(ThreadType.GROUP, name, null);
-        thread.getParticipants().addAll(users);
-        return threadRepo.save(thread);
+        thread.addParticipants(users);
+        MessageThread saved = threadRepo.save(thread);
+        sharedThreads.addGroupThread(saved.getId(), ids);
+        return saved;
     }
 
     public Message postMessage(UUID threadId, UUID senderId, String content) {
+        return postMessage(threadId, senderId, content, null);
+    }
+
+    /**
+     * Posts a message. When {@code idempotencyKey} is given and the sender already posted a message
+     * with that key, the original message is returned instead of inserting a new one.
+     */
+    public Message postMessage(UUID threadId, UUID senderId, String content, String idempotencyKey) {
         if (content == null || content.isBlank()) {
             throw new BadRequestException("Message content cannot be empty");
         }
+        if (characters(content) > MAX_CONTENT_LENGTH) {
+            throw new BadRequestException("Message content must be at most " + MAX_CONTENT_LENGTH + " characters");
+        }
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                throw new BadRequestException("Idempotency-Key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+            }
+            // a retry racing its original waits here until the original commits, then finds it below
+            threadRepo.lockForNewMessage(threadId)
+                    .orElseThrow(() -> new NotFoundException("Thread not found: " + threadId));
+            Optional<Message> original = messageRepo.findBySender_IdAndIdempotencyKey(senderId, idempotencyKey);
+            if (original.isPresent()) {
+                if (!original.get().getThread().getId().equals(threadId)) {
+                    throw new BadRequestException("Idempotency-Key was already used for another thread");
+                }
+                return original.get();
+            }
+        }
         MessageThread thread = getThread(threadId);
         UserAccount sender = getUser(senderId);
-        if (!thread.getParticipants().contains(sender)) {
+        if (!threadRepo.isParticipant(threadId, senderId)) {
             throw new BadRequestException("Sender is not a participant of the thread");
         }
-        Message message = messageRepo.save(new Message(thread, sender, content));
-        // update thread's updatedAt to reflect new activity
-        thread.touch();
+        // also bumps the thread's updatedAt to reflect new activity and refreshes its summary
+        UUID messageId = UUID.randomUUID();
+        long seq = threadRepo.recordNewMessage(threadId, messageId, senderId, preview(content));
+        Message message = messageRepo.save(new Message(messageId, thread, sender, seq, content, idempotencyKey));
+        // senders have read their own messages
+        threadRepo.advanceReadCursor(threadId, senderId, seq);
         return message;
     }
 
+    /**
+     * Marks the thread as read by {@code userId} up to message {@code seq}, or up to the latest
+     * message when {@code seq} is null. Read cursors only move forward.
+     */
+    public void markRead(UUID threadId, UUID userId, Long seq) {
+        getThread(threadId); // ensure exists
+        if (userId == null || threadRepo.advanceReadCursor(threadId, userId, seq != null ? seq : Long.MAX_VALUE) == 0) {
+            throw new BadRequestException("User is not a participant of the thread");
+        }
+    }
+
+    /**
+     * Read cursors of {@code userId} for the given threads, keyed by thread id.
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, Long> getLastReadSeqs(UUID userId, Collection<UUID> threadIds) {
+        if (threadIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, Long> cursors = new HashMap<>();
+        threadRepo.findReadCursors(userId, threadIds).forEach(c -> cursors.put(c.getThreadId(), c.getLastReadSeq()));
+        return cursors;
+    }
+
     @Transactional(readOnly = true)
     public MessageThread getThread(UUID id) {
         return threadRepo.findById(id).orElseThrow(() -> new NotFoundException("Thread not found: " + id));
     }
 
+    @Transactional(readOnly = true)
+    public Page<UserAccount> getParticipants(UUID threadId, Pageable pageable) {
+        getThread(threadId); // ensure exists
+        return userRepo.findParticipants(threadId, pageable);
+    }
+
     @Transactional(readOnly = true)
     public Page<MessageThread> getThreadsForUser(UUID userId, Pageable pageable) {
         getUser(userId); // ensure exists
         return threadRepo.findDistinctByParticipants_IdOrderByUpdatedAtDesc(userId, pageable);
     }
 
+    /**
+     * Group threads that {@code userId} and every user in {@code withIds} are members of, most
+     * recently created first. Answered from the {@link SharedThreadIndex}; only the page itself is
+     * loaded from the database.
+     */
     @Transactional(readOnly = true)
+    public Page<MessageThread> getSharedThreads(UUID userId, Collection<UUID> withIds, Pageable pageable) {
+        Set<UUID> ids = new LinkedHashSet<>(withIds == null ? List.of() : withIds);
+        ids.remove(userId);
+        if (ids.isEmpty() || ids.size() > MAX_SHARED_WITH) {
+            throw new BadRequestException("with must name 1-" + MAX_SHARED_WITH + " other users");
+        }
+        ids.add(userId);
+        List<UserAccount> users = userRepo.findAllById(ids);
+        if (users.size() < ids.size()) {
+            users.forEach(u -> ids.remove(u.getId()));
+            throw new NotFoundException("User not found: " + ids.iterator().next());
+        }
+        Page<UUID> shared = sharedThreads.findShared(ids, pageable);
+        Map<UUID, MessageThread> threads = new HashMap<>();
+        threadRepo.findAllById(shared.getContent()).forEach(t -> threads.put(t.getId(), t));
+        return shared.map(threads::get);
+    }
+
+    /**
+     * Messages of the thread in seq order. Seqs are gap-free, so a page is a seq range: the part
+     * at or below the thread's archived seq is read from the archive, the rest from the database.
+     * Repeatable read keeps the range query on the snapshot the archived seq came from, so messages
+     * the archiver deletes meanwhile are still returned.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public Page<Message> getMessages(UUID threadId, Pageable pageable) {
-        getThread(threadId); // ensure exists
-        return messageRepo.findByThread_IdOrderByCreatedAtAsc(threadId, pageable);
+        MessageThread thread = getThread(threadId);
+        long total = thread.getMessageSeq();
+        long fromSeq = pageable.getOffset() + 1;
+        long toSeq = Math.min(total, pageable.getOffset() + pageable.getPageSize());
+        if (fromSeq > toSeq) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+        long archivedSeq = thread.getArchivedSeq();
+        List<Message> content = new ArrayList<>(pageable.getPageSize());
+        if (fromSeq <= archivedSeq) {
+            content.addAll(archive.read(thread, fromSeq, Math.min(toSeq, archivedSeq)));
+        }
+        if (toSeq > archivedSeq) {
+            content.addAll(messageRepo.findByThread_IdAndSeqBetweenOrderBySeqAsc(threadId, Math.max(fromSeq, archivedSeq + 1), toSeq));
+        }
+        return new PageImpl<>(content, pageable, total);
     }
 
     @Transactional(readOnly = true)
     public Message getMessage(UUID threadId, UUID messageId) {
         return messageRepo.findByIdAndThread_Id(messageId, threadId)
+                .or(() -> threadRepo.findById(threadId)
+                        .filter(thread -> thread.getArchivedSeq() > 0)
+                        .flatMap(thread -> archive.find(thread, messageId)))
                 .orElseThrow(() -> new NotFoundException("Message not found in thread"));
     }
 
-    private static String normalizeDirectKey(UUID a, UUID b) {
+    /**
+     * Thread changes and new messages across all threads of {@code userId} since {@code token},
+     * or the full thread list without messages when {@code token} is null. Runs in one
+     * REPEATABLE READ snapshot, which also becomes the returned token, so that no change
+     * committed concurrently is either missed or reported twice. A token issued by another
+     * database cluster, or by this one before it was restored to an earlier point, also gets the
+     * full thread list, since its snapshot does not describe this database's history.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public UserSync sync(UUID userId, String token) {
+        SyncToken sinceToken = token == null ? null : decodeSyncToken(token);
+        getUser(userId); // ensure exists
+        MessageThreadRepository.SyncPosition now = threadRepo.currentSyncPosition();
+        SyncToken current = new SyncToken(now.getCluster(), now.getSnapshot());
+        boolean full = sinceToken == null || !sinceToken.cluster().equals(current.cluster()) || sinceToken.xmax() > current.xmax();
+        String since = full ? INITIAL_SNAPSHOT : sinceToken.snapshot();
+
+        List<MessageThreadRepository.ThreadChange> changes = threadRepo.findChangesSince(userId, since);
+        Map<UUID, Long> lastReadSeqs = new HashMap<>();
+        Map<UUID, Long> syncedSeqs = new HashMap<>();
+        changes.forEach(c -> {
+            lastReadSeqs.put(c.getThreadId(), c.getLastReadSeq());
+            syncedSeqs.put(c.getThreadId(), c.getSyncedSeq());
+        });
+        List<MessageThread> threads = new ArrayList<>(threadRepo.findAllById(lastReadSeqs.keySet()));
+        threads.sort(Comparator.comparing(MessageThread::getUpdatedAt).reversed());
+
+        List<Message> messages = List.of();
+        List<UUID> truncated = new ArrayList<>();
+        if (!full && !threads.isEmpty()) {
+            Map<UUID, Integer> position = new HashMap<>();
+            threads.forEach(t -> position.put(t.getId(), position.size()));
+            messages = new ArrayList<>(messageRepo.findByIdIn(messageRepo.findNewMessageIds(userId, since, MAX_SYNC_MESSAGES_PER_THREAD)));
+            messages.sort(Comparator.<Message>comparingInt(m -> position.get(m.getThread().getId())).thenComparingLong(Message::getSeq));
+            threads.stream()
+                    .filter(t -> t.getMessageSeq() - syncedSeqs.get(t.getId()) > MAX_SYNC_MESSAGES_PER_THREAD)
+                    .forEach(t -> truncated.add(t.getId()));
+        }
+        return new UserSync(current.encode(), full, threads, lastReadSeqs, messages, truncated);
+    }
+
+    @Transactional(readOnly = true)
+    public MessageSearchPage searchMessagesForUser(UUID userId, String query, String cursor, int size) {
+        getUser(userId); // ensure exists
+        return search(query, cursor, size, (rank, id, limit) -> messageRepo.searchForUser(userId, query, rank, id, limit));
+    }
+
+    @Transactional(readOnly = true)
+    public MessageSearchPage searchMessagesInThread(UUID threadId, UUID userId, String query, String cursor, int size) {
+        getThread(threadId); // ensure exists
+        if (userId == null || !threadRepo.isParticipant(threadId, userId)) {
+            throw new BadRequestException("User is not a participant of the thread");
+        }
+        return search(query, cursor, size, (rank, id, limit) -> messageRepo.searchInThread(threadId, query, rank, id, limit));
+    }
+
+    private interface SearchQuery {
+        List<MessageRepository.SearchHit> run(float afterRank, UUID afterId, int limit);
+    }
+
+    private MessageSearchPage search(String query, String cursor, int size, SearchQuery searchQuery) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query cannot be empty");
+        }
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new BadRequestException("Search page size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        ByteBuffer after = decodeSearchCursor(cursor);
+        // fetch one extra hit to learn whether another page follows
+        List<MessageRepository.SearchHit> hits = searchQuery.run(after.getFloat(), new UUID(after.getLong(), after.getLong()), size + 1);
+        String next = null;
+        if (hits.size() > size) {
+            hits = hits.subList(0, size);
+            MessageRepository.SearchHit last = hits.get(size - 1);
+            next = encodeSearchCursor(last.getRank(), last.getId());
+        }
+        Map<UUID, Message> byId = new HashMap<>();
+        messageRepo.findByIdIn(hits.stream().map(MessageRepository.SearchHit::getId).toList())
+                .forEach(m -> byId.put(m.getId(), m));
+        return new MessageSearchPage(hits.stream().map(h -> byId.get(h.getId())).toList(), next);
+    }
+
+    // cursor = last (rank, id) of the previous page; absent means start above every possible hit
+    private static ByteBuffer decodeSearchCursor(String cursor) {
+        if (cursor == null) {
+            return ByteBuffer.allocate(20).putFloat(Float.POSITIVE_INFINITY).putLong(-1L).putLong(-1L).flip();
+        }
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != 20) {
+                throw new IllegalArgumentException();
+            }
+            return ByteBuffer.wrap(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid search cursor");
+        }
+    }
+
+    private static String encodeSearchCursor(float rank, UUID id) {
+        ByteBuffer buf = ByteBuffer.allocate(20)
+                .putFloat(rank).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+    }
+
+    private record SyncToken(String cluster, String snapshot) {
+
+        long xmax() {
+            return Long.parseLong(snapshot.split(":")[1]);
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((cluster + "/" + snapshot).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static SyncToken decodeSyncToken(String token) {
+        try {
+            Matcher matcher = SYNC_TOKEN.matcher(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII));
+            if (matcher.matches() && isConsistentSnapshot(matcher.group(2))) {
+                return new SyncToken(matcher.group(1), matcher.group(2));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new BadRequestException("Invalid sync token");
+    }
+
+    // what pg_snapshot input checks beyond syntax: 0 < xmin <= xip < xmax, in ascending order
+    private static boolean isConsistentSnapshot(String snapshot) {
+        String[] parts = snapshot.split(":", -1);
+        long xmin = Long.parseLong(parts[0]);
+        long xmax = Long.parseLong(parts[1]);
+        long previous = xmin - 1;
+        for (String xip : parts[2].isEmpty() ? new String[0] : parts[2].split(",")) {
+            long xid = Long.parseLong(xip);
+            if (xid <= previous || xid >= xmax) {
+                return false;
+            }
+            previous = xid;
+        }
+        return xmin > 0 && xmin <= xmax;
+    }
+
+    private static int characters(String value) {
+        return value.codePointCount(0, value.length());
+    }
+
+    private static String preview(String content) {
+        if (characters(content) <= MessageThread.MESSAGE_PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, MessageThread.MESSAGE_PREVIEW_LENGTH));
+    }
+
+    // normalized "minId:maxId", so (a, b) and (b, a) map to the same key
+    static String directKey(UUID a, UUID b) {
         String s1 = a.toString();
         String s2 = b.toString();
         return (s1.compareTo(s2) < 0) ? s1 + ":" + s2 : s2 + ":" + s1;
-        }
+    }
 }
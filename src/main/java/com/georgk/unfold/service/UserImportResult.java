@@ -0,0 +1,20 @@
+package com.georgk.unfold.service;
+
+import java.util.UUID;
+
+/**
+ * Outcome of a single input row of a bulk user import.
+ *
+ * @param line     1-based line number of the row in the uploaded file
+ * @param username username as read from the row; null if the row could not be parsed
+ * @param id       id of the created user, or of the existing user for duplicates; null for invalid rows
+ * @param status   what happened to the row
+ */
+public record UserImportResult(long line, String username, UUID id, Status status) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
@@ -0,0 +1,173 @@
+package com.georgk.unfold.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bulk user import. Rows are streamed into a session-local staging table with
+ * {@code COPY ... FROM STDIN}, inserted in a single set-based statement that resolves
+ * duplicates against {@code uk_users_username}, and reported back row by row through
+ * a server-side cursor, so neither the upload nor the result set is held in memory.
+ */
+@Service
+@Transactional
+public class UserImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final int MAX_USERNAME_LENGTH = 100;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int RESULT_FETCH_SIZE = 1000;
+
+    private static final String INSERT_NEW_USERS = """
+            WITH created AS (
+                INSERT INTO users (id, username, created_at)
+                SELECT gen_random_uuid(), username, now()
+                FROM (SELECT DISTINCT username FROM user_import WHERE %s) candidates
+                ON CONFLICT ON CONSTRAINT uk_users_username DO NOTHING
+                RETURNING id, username
+            )
+            INSERT INTO user_import_created (id, username)
+            SELECT id, username FROM created
+            """.formatted(validUsername("username"));
+
+    private static final String SELECT_RESULTS = """
+            SELECT i.line_no,
+                   i.username,
+                   CASE
+                       WHEN NOT (%s) THEN 'INVALID'
+                       WHEN c.id IS NOT NULL AND i.line_no = min(i.line_no) OVER (PARTITION BY i.username) THEN 'CREATED'
+                       ELSE 'DUPLICATE'
+                   END AS status,
+                   coalesce(c.id, u.id) AS user_id
+            FROM user_import i
+            LEFT JOIN user_import_created c ON c.username = i.username
+            LEFT JOIN users u ON u.username = i.username
+            ORDER BY i.line_no
+            """.formatted(validUsername("i.username"));
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+
+    public UserImportService(DataSource dataSource, ObjectMapper objectMapper) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(RESULT_FETCH_SIZE);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Imports every row of {@code source} and hands one {@link UserImportResult} per row,
+     * in input order, to {@code sink}. Empty lines and a leading CSV {@code username}
+     * header are skipped.
+     */
+    public void importUsers(Reader source, Format format, Consumer<UserImportResult> sink) {
+        jdbc.execute("CREATE TEMP TABLE user_import (line_no bigint NOT NULL, username text) ON COMMIT DROP");
+        jdbc.execute("CREATE TEMP TABLE user_import_created (id uuid NOT NULL, username text NOT NULL) ON COMMIT DROP");
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            copyToStaging(con.unwrap(PGConnection.class), source, format);
+            return null;
+        });
+        jdbc.execute("ANALYZE user_import");
+        jdbc.update(INSERT_NEW_USERS);
+        jdbc.query(SELECT_RESULTS, rs -> {
+            String status = rs.getString("status");
+            sink.accept(new UserImportResult(
+                    rs.getLong("line_no"),
+                    rs.getString("username"),
+                    "INVALID".equals(status) ? null : rs.getObject("user_id", UUID.class),
+                    UserImportResult.Status.valueOf(status)));
+        });
+    }
+
+    private void copyToStaging(PGConnection con, Reader source, Format format) throws SQLException {
+        BufferedReader in = source instanceof BufferedReader br ? br : new BufferedReader(source);
+        try (Writer out = new OutputStreamWriter(
+                new PGCopyOutputStream(con, "COPY user_import (line_no, username) FROM STDIN", COPY_BUFFER_SIZE),
+                StandardCharsets.UTF_8)) {
+            long lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty() || (lineNo == 1 && format == Format.CSV && line.equalsIgnoreCase("username"))) {
+                    continue;
+                }
+                String username = format == Format.CSV ? firstCsvField(line) : ndjsonUsername(line);
+                out.write(Long.toString(lineNo));
+                out.write('\t');
+                writeCopyValue(out, username);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to stream user import", e);
+        }
+    }
+
+    private static String validUsername(String column) {
+        return "%1$s IS NOT NULL AND btrim(%1$s) <> '' AND length(%1$s) <= %2$d".formatted(column, MAX_USERNAME_LENGTH);
+    }
+
+    private String ndjsonUsername(String line) {
+        try {
+            JsonNode username = objectMapper.readTree(line).path("username");
+            return username.isTextual() ? username.textValue() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String firstCsvField(String line) {
+        if (!line.startsWith("\"")) {
+            int comma = line.indexOf(',');
+            return comma < 0 ? line : line.substring(0, comma);
+        }
+        StringBuilder field = new StringBuilder(line.length());
+        for (int i = 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    return field.toString();
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return null; // unterminated quote
+    }
+
+    // COPY text format: \N is NULL, and backslash, tab and line breaks must be escaped
+    private static void writeCopyValue(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.write("\\\\");
+                case '\t' -> out.write("\\t");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                default -> out.write(c);
+            }
+        }
+    }
+}
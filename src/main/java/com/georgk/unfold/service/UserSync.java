@@ -0,0 +1,24 @@
+package com.georgk.unfold.service;
+
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.domain.MessageThread;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Everything that changed for a user since a sync token.
+ *
+ * @param token              opaque token to pass to the next sync
+ * @param full               whether this is the user's full thread list, which replaces what the client
+ *                           has, rather than the changes since the token
+ * @param threads            threads whose summary or read cursor changed, most recently updated first
+ * @param lastReadSeqs       the user's read cursor per returned thread
+ * @param messages           new messages of the returned threads, by thread and then seq
+ * @param truncatedThreadIds threads with more new messages than returned; the older ones are paged
+ *                           through the thread's messages
+ */
+public record UserSync(String token, boolean full, List<MessageThread> threads, Map<UUID, Long> lastReadSeqs,
+                       List<Message> messages, List<UUID> truncatedThreadIds) {
+}
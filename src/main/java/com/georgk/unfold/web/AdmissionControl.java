@@ -0,0 +1,113 @@
+package com.georgk.unfold.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user and per-thread rate limits of the expensive endpoints, checked before a request
+ * touches the database. All limits share one bounded {@link TokenBucketTable}; each limit salts
+ * the key hash, so a user's post and search budgets are separate buckets.
+ */
+@Component
+public class AdmissionControl {
+
+    /**
+     * Sustained rate and burst size of one kind of bucket; a rate of 0 disables the limit.
+     */
+    record Limit(String name, long salt, double perSecond, int burst) {
+
+        long intervalMicros() {
+            return Math.max(1, Math.round(1_000_000 / perSecond));
+        }
+
+        boolean enabled() {
+            return perSecond > 0 && burst > 0;
+        }
+    }
+
+    private final boolean enabled;
+    private final TokenBucketTable buckets;
+    private final LongSupplier clockMicros;
+
+    final Limit postPerThread;
+    final Limit postPerUser;
+    final Limit listThreadsPerUser;
+    final Limit searchPerUser;
+
+    @Autowired
+    public AdmissionControl(@Value("${messaging.admission.enabled:false}") boolean enabled,
+                            @Value("${messaging.admission.buckets:1048576}") int buckets,
+                            @Value("${messaging.admission.post-message.thread-rate:20}") double postThreadRate,
+                            @Value("${messaging.admission.post-message.thread-burst:50}") int postThreadBurst,
+                            @Value("${messaging.admission.post-message.user-rate:5}") double postUserRate,
+                            @Value("${messaging.admission.post-message.user-burst:20}") int postUserBurst,
+                            @Value("${messaging.admission.list-threads.user-rate:10}") double listThreadsRate,
+                            @Value("${messaging.admission.list-threads.user-burst:30}") int listThreadsBurst,
+                            @Value("${messaging.admission.search.user-rate:2}") double searchRate,
+                            @Value("${messaging.admission.search.user-burst:10}") int searchBurst) {
+        this(enabled, buckets,
+                new Limit("post-message per thread", 1, postThreadRate, postThreadBurst),
+                new Limit("post-message per user", 2, postUserRate, postUserBurst),
+                new Limit("list-threads per user", 3, listThreadsRate, listThreadsBurst),
+                new Limit("search per user", 4, searchRate, searchBurst),
+                monotonicMicros());
+    }
+
+    AdmissionControl(boolean enabled, int buckets, Limit postPerThread, Limit postPerUser, Limit listThreadsPerUser,
+                     Limit searchPerUser, LongSupplier clockMicros) {
+        this.enabled = enabled;
+        this.buckets = new TokenBucketTable(buckets);
+        this.postPerThread = postPerThread;
+        this.postPerUser = postPerUser;
+        this.listThreadsPerUser = listThreadsPerUser;
+        this.searchPerUser = searchPerUser;
+        this.clockMicros = clockMicros;
+    }
+
+    /**
+     * Takes a token for {@code key} from the buckets of {@code limit}.
+     *
+     * @return 0 if admitted, otherwise the seconds after which a retry can succeed
+     */
+    long acquire(Limit limit, UUID key) {
+        if (!enabled || !limit.enabled()) {
+            return 0;
+        }
+        long hash = TokenBucketTable.hash(key.getMostSignificantBits(), key.getLeastSignificantBits(), limit.salt());
+        long waitMicros = buckets.tryAcquire(hash, limit.intervalMicros(), limit.burst(), clockMicros.getAsLong());
+        return waitMicros == 0 ? 0 : Math.max(1, (waitMicros + 999_999) / 1_000_000);
+    }
+
+    /**
+     * Checks the posting limits of the thread and of the sender. Called by the controller rather
+     * than the filter, once the body is read and a post is known not to be a retry answered from
+     * the recent {@code Idempotency-Key}s.
+     */
+    public void admitPost(UUID threadId, UUID senderId) {
+        admit(postPerThread, threadId);
+        admitSender(senderId);
+    }
+
+    /**
+     * Checks the per-user posting limit of a sender, which is only known once the body is read.
+     */
+    public void admitSender(UUID senderId) {
+        admit(postPerUser, senderId);
+    }
+
+    private void admit(Limit limit, UUID key) {
+        long retryAfter = key == null ? 0 : acquire(limit, key);
+        if (retryAfter > 0) {
+            throw new TooManyRequestsException("Rate limit exceeded: " + limit.name(), retryAfter);
+        }
+    }
+
+    private static LongSupplier monotonicMicros() {
+        long origin = System.nanoTime();
+        return () -> (System.nanoTime() - origin) / 1_000;
+    }
+}
@@ -0,0 +1,101 @@
+package com.georgk.unfold.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Rejects requests over their {@link AdmissionControl} limit with 429 and {@code Retry-After}
+ * before they reach a controller or the connection pool. Keys are taken from the URL only:
+ * <ul>
+ *     <li>{@code GET /users/{id}/threads}, {@code GET /users/{id}/sync} - the user, sharing one budget</li>
+ *     <li>{@code GET /users/{id}/search}, {@code GET /threads/{id}/search?userId=} - the searching user</li>
+ * </ul>
+ * Paths are matched by hand rather than with patterns, to keep the check off the profile. Posts
+ * are admitted by {@link ThreadController}, which knows whether they are retries.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String THREADS = "/threads/";
+    private static final String USERS = "/users/";
+    private static final int UUID_LENGTH = 36;
+
+    private final AdmissionControl admission;
+    private final ObjectMapper objectMapper;
+
+    public AdmissionFilter(AdmissionControl admission, ObjectMapper objectMapper) {
+        this.admission = admission;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionControl.Limit limit = null;
+        UUID key = null;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("GET".equals(request.getMethod())) {
+            if ((key = idBetween(path, USERS, "/threads")) != null || (key = idBetween(path, USERS, "/sync")) != null) {
+                limit = admission.listThreadsPerUser;
+            } else if ((key = idBetween(path, USERS, "/search")) != null) {
+                limit = admission.searchPerUser;
+            } else if (idBetween(path, THREADS, "/search") != null && (key = parse(request.getParameter("userId"))) != null) {
+                limit = admission.searchPerUser;
+            }
+        }
+
+        long retryAfter = limit == null ? 0 : admission.acquire(limit, key);
+        if (retryAfter > 0) {
+            reject(response, limit, retryAfter);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // same body as RestExceptionHandler, which does not see requests rejected here
+    private void reject(HttpServletResponse response, AdmissionControl.Limit limit, long retryAfter) throws IOException {
+        HttpStatus status = HttpStatus.TOO_MANY_REQUESTS;
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", status.value(),
+                "error", status.getReasonPhrase(),
+                "message", "Rate limit exceeded: " + limit.name()
+        ));
+    }
+
+    // the id in "<prefix><id><suffix>", or null if the path has another shape
+    private static UUID idBetween(String path, String prefix, String suffix) {
+        if (path.length() != prefix.length() + UUID_LENGTH + suffix.length() || !path.startsWith(prefix) || !path.endsWith(suffix)) {
+            return null;
+        }
+        return parse(path.substring(prefix.length(), prefix.length() + UUID_LENGTH));
+    }
+
+    // malformed ids are left for the controller to reject
+    private static UUID parse(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.georgk.unfold.web;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.mediatype.hal.HalMediaTypeConfiguration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary encodings of the HAL representations, negotiated through {@code Accept} next to
+ * {@code application/hal+json}. The documents have the HAL JSON structure ({@code _links},
+ * {@code _embedded}, page metadata); the one difference is that UUID properties are written as
+ * 16-byte binary values, which is how Jackson encodes them in formats with native binary support.
+ * Both mappers start from the application's Jackson settings and get the HAL module, which the
+ * default CBOR and Smile converters would lack.
+ */
+@Configuration(proxyBeanMethods = false)
+public class CompactMediaTypes {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter halCborConverter(Jackson2ObjectMapperBuilder builder, HalMediaTypeConfiguration hal) {
+        return new MappingJackson2CborHttpMessageConverter(hal.configureObjectMapper(builder.factory(new CBORFactory()).build()));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter halSmileConverter(Jackson2ObjectMapperBuilder builder, HalMediaTypeConfiguration hal) {
+        return new MappingJackson2SmileHttpMessageConverter(hal.configureObjectMapper(builder.factory(new SmileFactory()).build()));
+    }
+}
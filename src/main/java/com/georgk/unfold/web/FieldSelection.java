@@ -0,0 +1,74 @@
+package com.georgk.unfold.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sparse fieldset requested through the {@code fields} parameter, e.g.
+ * {@code fields=id,content,_links.self}. Names are the JSON property names of a model;
+ * {@code _links} selects every link and {@code _links.<rel>} a single one. Assemblers consult the
+ * selection before computing a property or building a link, so unrequested parts cost nothing;
+ * the models leave such properties null and are annotated to omit null properties from the output.
+ * In collections the selection applies to each item, while page metadata and paging links are
+ * always rendered. Only GET requests are narrowed; other methods get the full representation.
+ */
+public final class FieldSelection {
+
+    public static final String PARAMETER = "fields";
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    private static final String LINKS = "_links";
+    private static final String LINK_PREFIX = LINKS + ".";
+    private static final String ATTRIBUTE = FieldSelection.class.getName();
+
+    private final Set<String> fields; // null selects everything
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a comma-separated list of field names; a missing or blank value selects everything.
+     */
+    public static FieldSelection parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        Set<String> fields = Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        return new FieldSelection(fields);
+    }
+
+    /**
+     * Selection of the request being handled, parsed once and kept as a request attribute.
+     */
+    public static FieldSelection current() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return ALL;
+        }
+        if (attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof FieldSelection selection) {
+            return selection;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        FieldSelection selection = HttpMethod.GET.matches(request.getMethod()) ? parse(request.getParameter(PARAMETER)) : ALL;
+        attributes.setAttribute(ATTRIBUTE, selection, RequestAttributes.SCOPE_REQUEST);
+        return selection;
+    }
+
+    public boolean includes(String property) {
+        return fields == null || fields.contains(property);
+    }
+
+    public boolean includesLink(String rel) {
+        return fields == null || fields.contains(LINKS) || fields.contains(LINK_PREFIX + rel);
+    }
+}
@@ -0,0 +1,46 @@
+package com.georgk.unfold.web;
+
+import com.georgk.unfold.web.model.MessageModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free index of recently answered {@code Idempotency-Key}s for message posting.
+ * A direct-mapped table: each key hashes to one slot and a newer key simply overwrites the
+ * slot, so memory is fixed and lookups neither lock nor allocate. A miss is always safe,
+ * because the unique constraint on (sender, key) in the database remains the source of truth.
+ */
+@Component
+public class RecentIdempotencyKeys {
+
+    private record Entry(String key, UUID senderId, UUID threadId, MessageModel message) {}
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    public RecentIdempotencyKeys(@Value("${messaging.idempotency.recent-keys:65536}") int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public MessageModel find(String key, UUID senderId, UUID threadId) {
+        Entry entry = slots.get(slot(key));
+        if (entry != null && entry.key.equals(key) && entry.senderId.equals(senderId) && entry.threadId.equals(threadId)) {
+            return entry.message;
+        }
+        return null;
+    }
+
+    public void remember(String key, UUID senderId, UUID threadId, MessageModel message) {
+        slots.set(slot(key), new Entry(key, senderId, threadId, message));
+    }
+
+    private int slot(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
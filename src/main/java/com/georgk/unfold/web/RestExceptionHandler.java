@@ -1,19 +1,26 @@
 package com.georgk.unfold.web;
 
+import com.georgk.unfold.service.ArchiveUnavailableException;
 import com.georgk.unfold.service.BadRequestException;
 import com.georgk.unfold.service.NotFoundException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.Map;
 
 @ControllerAdvice
 public class RestExceptionHandler {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<?> handleNotFound(NotFoundException ex) {
         return error(HttpStatus.NOT_FOUND, ex.getMessage());
@@ -24,11 +31,47 @@ public class RestExceptionHandler {
         return error(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
+    // unique violations only; other integrity violations are input the services failed to validate
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> handleConflict(DataIntegrityViolationException ex) {
+        if (!isUniqueViolation(ex)) {
+            return handleOther(ex);
+        }
+        return error(HttpStatus.CONFLICT, "Request conflicts with existing data");
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<?> handleTooManyRequests(TooManyRequestsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(error(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage()).getBody());
+    }
+
+    @ExceptionHandler(ArchiveUnavailableException.class)
+    public ResponseEntity<?> handleArchiveUnavailable(ArchiveUnavailableException ex) {
+        return error(HttpStatus.SERVICE_UNAVAILABLE, "Archived messages are unavailable");
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleOther(Exception ex) {
         return error(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error");
     }
 
+    // batched inserts report the SQLState on the next exception of the batch, not on the translated one
+    private static boolean isUniqueViolation(DataIntegrityViolationException ex) {
+        if (ex instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            for (SQLException sql = cause instanceof SQLException e ? e : null; sql != null; sql = sql.getNextException()) {
+                if (UNIQUE_VIOLATION.equals(sql.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
         return ResponseEntity.status(status).body(Map.of(
                 "timestamp", Instant.now().toString(),
@@ -1,49 +1,78 @@
 package com.georgk.unfold.web;
 
+import com.georgk.unfold.activity.ActivityTracker;
 import com.georgk.unfold.domain.Message;
 import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.service.MessageSearchPage;
 import com.georgk.unfold.service.ThreadService;
 import com.georgk.unfold.web.assembler.MessageModelAssembler;
 import com.georgk.unfold.web.assembler.ThreadModelAssembler;
+import com.georgk.unfold.web.assembler.UserModelAssembler;
 import com.georgk.unfold.web.model.MessageModel;
 import com.georgk.unfold.web.model.ThreadModel;
+import com.georgk.unfold.web.model.UserModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.util.*;
 
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
 @RestController
-@RequestMapping(path = "/", produces = MediaTypes.HAL_JSON_VALUE)
+@RequestMapping(path = "/", produces = {MediaTypes.HAL_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, CompactMediaTypes.SMILE_VALUE})
 public class ThreadController {
 
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final ThreadService service;
     private final ThreadModelAssembler threadAssembler;
     private final MessageModelAssembler messageAssembler;
+    private final UserModelAssembler userAssembler;
     private final PagedResourcesAssembler<MessageThread> threadPagedAssembler;
     private final PagedResourcesAssembler<Message> messagePagedAssembler;
+    private final PagedResourcesAssembler<UserAccount> userPagedAssembler;
+    private final RecentIdempotencyKeys recentKeys;
+    private final AdmissionControl admission;
+    private final ActivityTracker activity;
 
     public ThreadController(ThreadService service,
                             ThreadModelAssembler threadAssembler,
                             MessageModelAssembler messageAssembler,
+                            UserModelAssembler userAssembler,
                             PagedResourcesAssembler<MessageThread> threadPagedAssembler,
-                            PagedResourcesAssembler<Message> messagePagedAssembler) {
+                            PagedResourcesAssembler<Message> messagePagedAssembler,
+                            PagedResourcesAssembler<UserAccount> userPagedAssembler,
+                            RecentIdempotencyKeys recentKeys,
+                            AdmissionControl admission,
+                            ActivityTracker activity) {
         this.service = service;
         this.threadAssembler = threadAssembler;
         this.messageAssembler = messageAssembler;
+        this.userAssembler = userAssembler;
         this.threadPagedAssembler = threadPagedAssembler;
         this.messagePagedAssembler = messagePagedAssembler;
+        this.userPagedAssembler = userPagedAssembler;
+        this.recentKeys = recentKeys;
+        this.admission = admission;
+        this.activity = activity;
     }
 
     public record DirectThreadRequest(UUID user1Id, UUID user2Id) {}
     public record GroupThreadRequest(List<UUID> participantIds, String name, UUID senderId, String initialMessage) {}
     public record MessageRequest(UUID senderId, String content) {}
+    public record ReadRequest(UUID userId, Long seq) {}
 
     @PutMapping(path = "/threads/direct", consumes = "application/json")
     public ResponseEntity<ThreadModel> createOrGetDirect(@RequestBody DirectThreadRequest req) {
@@ -60,6 +89,8 @@ public class ThreadController {
                 throw new IllegalArgumentException("senderId is required when initialMessage is provided");
             }
             service.postMessage(thread.getId(), req.senderId(), req.initialMessage());
+            // the summary columns are written by the post, not through the entity created above
+            thread = service.getThread(thread.getId());
         }
         ThreadModel model = threadAssembler.toModel(thread);
         return ResponseEntity.created(URI.create(model.getRequiredLink("self").getHref())).body(model);
@@ -67,27 +98,76 @@ public class ThreadController {
 
     @GetMapping("/threads/{id}")
     public ThreadModel getThread(@PathVariable UUID id) {
+        activity.recordThread(id);
         return threadAssembler.toModel(service.getThread(id));
     }
 
+    @GetMapping("/threads/{id}/participants")
+    public PagedModel<UserModel> listParticipants(@PathVariable UUID id,
+                                                  @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
+                                                  @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        Pageable pageable = PageRequest.of(page, size);
+        activity.recordThread(id);
+        Page<UserAccount> result = service.getParticipants(id, pageable);
+        return userPagedAssembler.toModel(result, userAssembler);
+    }
+
     @GetMapping("/threads/{id}/messages")
     public PagedModel<MessageModel> listMessages(@PathVariable UUID id,
                                                  @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
                                                  @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
         Pageable pageable = PageRequest.of(page, size);
+        activity.recordThread(id);
         Page<Message> result = service.getMessages(id, pageable);
         return messagePagedAssembler.toModel(result, messageAssembler);
     }
 
     @PostMapping(path = "/threads/{id}/messages", consumes = "application/json")
-    public ResponseEntity<MessageModel> postMessage(@PathVariable UUID id, @RequestBody MessageRequest req) {
-        Message message = service.postMessage(id, req.senderId(), req.content());
-        MessageModel model = messageAssembler.toModel(message);
+    public ResponseEntity<MessageModel> postMessage(@PathVariable UUID id, @RequestBody MessageRequest req,
+                                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        activity.recordThread(id);
+        activity.recordUser(req.senderId());
+        MessageModel model = idempotencyKey != null && req.senderId() != null
+                ? recentKeys.find(idempotencyKey, req.senderId(), id)
+                : null;
+        // a retry answered from the cache costs neither the thread nor the sender anything
+        if (model == null) {
+            admission.admitPost(id, req.senderId());
+            Message message = service.postMessage(id, req.senderId(), req.content(), idempotencyKey);
+            model = messageAssembler.toModel(message);
+            if (idempotencyKey != null) {
+                recentKeys.remember(idempotencyKey, req.senderId(), id, model);
+            }
+        }
         return ResponseEntity.created(URI.create(model.getRequiredLink("self").getHref())).body(model);
     }
 
+    @PutMapping(path = "/threads/{id}/read", consumes = "application/json")
+    public ResponseEntity<Void> markRead(@PathVariable UUID id, @RequestBody ReadRequest req) {
+        service.markRead(id, req.userId(), req.seq());
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/threads/{threadId}/messages/{messageId}")
     public MessageModel getMessage(@PathVariable UUID threadId, @PathVariable UUID messageId) {
+        activity.recordThread(threadId);
         return messageAssembler.toModel(service.getMessage(threadId, messageId));
     }
+
+    @GetMapping("/threads/{id}/search")
+    public CollectionModel<MessageModel> searchMessages(@PathVariable UUID id,
+                                                        @RequestParam("userId") UUID userId,
+                                                        @RequestParam("q") String q,
+                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                        @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        activity.recordThread(id);
+        activity.recordUser(userId);
+        MessageSearchPage result = service.searchMessagesInThread(id, userId, q, cursor, size);
+        CollectionModel<MessageModel> model = messageAssembler.toCollectionModel(result.messages());
+        model.add(linkTo(methodOn(ThreadController.class).searchMessages(id, userId, q, cursor, size)).withSelfRel());
+        if (result.nextCursor() != null) {
+            model.add(linkTo(methodOn(ThreadController.class).searchMessages(id, userId, q, result.nextCursor(), size)).withRel(IanaLinkRelations.NEXT));
+        }
+        return model;
+    }
 }
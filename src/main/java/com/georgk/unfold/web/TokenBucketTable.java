@@ -0,0 +1,72 @@
+package com.georgk.unfold.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free table of token buckets. Each bucket is a single {@code long} updated by
+ * CAS, using the GCRA formulation of a token bucket: instead of a token count it stores the
+ * theoretical arrival time (TAT) of the next request, which makes refill implicit.
+ * <p>
+ * The table is direct-mapped like {@link RecentIdempotencyKeys}: a key hashes to one slot, whose
+ * top 16 bits hold a fingerprint of the key and the remaining 48 bits its TAT in microseconds.
+ * A key whose fingerprint does not match the slot evicts the previous bucket and starts full, so
+ * memory never grows, at the price that a bucket can be reset early under heavy contention for
+ * its slot. That errs on the side of admitting, never of rejecting a well-behaved key.
+ */
+final class TokenBucketTable {
+
+    private static final int TIME_BITS = 48;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    TokenBucketTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Takes one token from the bucket of {@code keyHash}, which refills one token per
+     * {@code intervalMicros} and holds up to {@code burst} tokens.
+     *
+     * @param nowMicros monotonic time in microseconds, between 0 and 2^48
+     * @return 0 if the token was taken, otherwise the microseconds until one is available
+     */
+    long tryAcquire(long keyHash, long intervalMicros, int burst, long nowMicros) {
+        int slot = (int) keyHash & mask;
+        long fingerprint = keyHash >>> TIME_BITS;
+        long tolerance = intervalMicros * burst;
+        while (true) {
+            long current = slots.get(slot);
+            long tat = current >>> TIME_BITS == fingerprint ? current & TIME_MASK : 0;
+            long next = Math.max(tat, nowMicros) + intervalMicros;
+            long excess = next - nowMicros - tolerance;
+            if (excess > 0) {
+                return excess;
+            }
+            if (slots.compareAndSet(slot, current, fingerprint << TIME_BITS | next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Spreads a key and a per-limit salt over all 64 bits (the finalizer of MurmurHash3), so that
+     * slot index and fingerprint are independent.
+     */
+    static long hash(long msb, long lsb, long salt) {
+        long h = msb ^ Long.rotateLeft(lsb, 32) ^ salt * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
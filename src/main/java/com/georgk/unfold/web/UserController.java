@@ -1,45 +1,64 @@
 package com.georgk.unfold.web;
 
+import com.georgk.unfold.activity.ActivityTracker;
 import com.georgk.unfold.domain.MessageThread;
 import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.service.MessageSearchPage;
 import com.georgk.unfold.service.ThreadService;
+import com.georgk.unfold.service.UserSync;
+import com.georgk.unfold.web.assembler.MessageModelAssembler;
 import com.georgk.unfold.web.assembler.ThreadModelAssembler;
 import com.georgk.unfold.web.assembler.UserModelAssembler;
+import com.georgk.unfold.web.model.MessageModel;
+import com.georgk.unfold.web.model.SyncModel;
 import com.georgk.unfold.web.model.ThreadModel;
 import com.georgk.unfold.web.model.UserModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
 @RestController
-@RequestMapping(path = "/users", produces = MediaTypes.HAL_JSON_VALUE)
+@RequestMapping(path = "/users", produces = {MediaTypes.HAL_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, CompactMediaTypes.SMILE_VALUE})
 public class UserController {
 
     private final ThreadService service;
     private final UserModelAssembler userAssembler;
     private final ThreadModelAssembler threadAssembler;
+    private final MessageModelAssembler messageAssembler;
     private final PagedResourcesAssembler<MessageThread> pagedAssembler;
     private final PagedResourcesAssembler<UserAccount> userPagedAssembler;
+    private final ActivityTracker activity;
 
     public UserController(ThreadService service,
                           UserModelAssembler userAssembler,
                           ThreadModelAssembler threadAssembler,
+                          MessageModelAssembler messageAssembler,
                           PagedResourcesAssembler<MessageThread> pagedAssembler,
-                          PagedResourcesAssembler<UserAccount> userPagedAssembler) {
+                          PagedResourcesAssembler<UserAccount> userPagedAssembler,
+                          ActivityTracker activity) {
         this.service = service;
         this.userAssembler = userAssembler;
         this.threadAssembler = threadAssembler;
+        this.messageAssembler = messageAssembler;
         this.pagedAssembler = pagedAssembler;
         this.userPagedAssembler = userPagedAssembler;
+        this.activity = activity;
     }
 
     @PostMapping(consumes = "application/json")
@@ -52,6 +71,7 @@ public class UserController {
 
     @GetMapping("/{id}")
     public UserModel getUser(@PathVariable UUID id) {
+        activity.recordUser(id);
         return userAssembler.toModel(service.getUser(id));
     }
 
@@ -68,7 +88,58 @@ public class UserController {
                                                       @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
                                                       @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
         Pageable pageable = PageRequest.of(page, size);
+        activity.recordUser(id);
         Page<MessageThread> result = service.getThreadsForUser(id, pageable);
-        return pagedAssembler.toModel(result, threadAssembler);
+        Map<UUID, Long> lastRead = service.getLastReadSeqs(id, result.map(MessageThread::getId).getContent());
+        return pagedAssembler.toModel(result, thread -> threadAssembler.toModel(thread, lastRead.getOrDefault(thread.getId(), 0L)));
+    }
+
+    /**
+     * Group threads the user shares with every user in {@code with}, most recently created first.
+     */
+    @GetMapping("/{id}/threads/shared")
+    public PagedModel<ThreadModel> listSharedThreads(@PathVariable UUID id,
+                                                     @RequestParam("with") List<UUID> with,
+                                                     @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
+                                                     @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        Pageable pageable = PageRequest.of(page, size);
+        activity.recordUser(id);
+        Page<MessageThread> result = service.getSharedThreads(id, with, pageable);
+        Map<UUID, Long> lastRead = service.getLastReadSeqs(id, result.map(MessageThread::getId).getContent());
+        return pagedAssembler.toModel(result, thread -> threadAssembler.toModel(thread, lastRead.getOrDefault(thread.getId(), 0L)));
+    }
+
+    /**
+     * Everything that changed for the user since {@code token}: changed threads with their unread
+     * counts and the new messages of those threads. Without a token, the user's full thread list.
+     * The {@code next} link carries the token for the following sync.
+     */
+    @GetMapping("/{id}/sync")
+    public SyncModel sync(@PathVariable UUID id, @RequestParam(value = "token", required = false) String token) {
+        activity.recordUser(id);
+        UserSync result = service.sync(id, token);
+        List<ThreadModel> threads = result.threads().stream()
+                .map(thread -> threadAssembler.toModel(thread, result.lastReadSeqs().getOrDefault(thread.getId(), 0L)))
+                .toList();
+        List<MessageModel> messages = result.messages().stream().map(messageAssembler::toModel).toList();
+        SyncModel model = new SyncModel(result.token(), result.full(), threads, messages, result.truncatedThreadIds());
+        model.add(linkTo(methodOn(UserController.class).sync(id, token)).withSelfRel());
+        model.add(linkTo(methodOn(UserController.class).sync(id, result.token())).withRel(IanaLinkRelations.NEXT));
+        return model;
+    }
+
+    @GetMapping("/{id}/search")
+    public CollectionModel<MessageModel> searchMessages(@PathVariable UUID id,
+                                                        @RequestParam("q") String q,
+                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                        @RequestParam(value = "size", required = false, defaultValue = "20") Integer size) {
+        activity.recordUser(id);
+        MessageSearchPage result = service.searchMessagesForUser(id, q, cursor, size);
+        CollectionModel<MessageModel> model = messageAssembler.toCollectionModel(result.messages());
+        model.add(linkTo(methodOn(UserController.class).searchMessages(id, q, cursor, size)).withSelfRel());
+        if (result.nextCursor() != null) {
+            model.add(linkTo(methodOn(UserController.class).searchMessages(id, q, result.nextCursor(), size)).withRel(IanaLinkRelations.NEXT));
+        }
+        return model;
     }
 }
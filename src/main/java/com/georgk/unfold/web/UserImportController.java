@@ -0,0 +1,56 @@
+package com.georgk.unfold.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.georgk.unfold.service.UserImportResult;
+import com.georgk.unfold.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+public class UserImportController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final UserImportService importService;
+    private final ObjectWriter resultWriter;
+
+    public UserImportController(UserImportService importService, ObjectMapper objectMapper) {
+        this.importService = importService;
+        this.resultWriter = objectMapper.writerFor(UserImportResult.class);
+    }
+
+    /**
+     * Streams a CSV (first column is the username) or NDJSON ({@code {"username": ...}} per line)
+     * upload into the users table and streams one NDJSON result per input row back.
+     */
+    @PostMapping(path = "/users:import",
+            consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Reader in = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+        OutputStream out = response.getOutputStream();
+        importService.importUsers(in, format, result -> {
+            try {
+                out.write(resultWriter.writeValueAsBytes(result));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+}
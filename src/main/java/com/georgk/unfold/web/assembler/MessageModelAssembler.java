@@ -1,12 +1,15 @@
 package com.georgk.unfold.web.assembler;
 
 import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.web.FieldSelection;
 import com.georgk.unfold.web.ThreadController;
 import com.georgk.unfold.web.UserController;
 import com.georgk.unfold.web.model.MessageModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
 
+import java.util.UUID;
+
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
@@ -14,10 +17,28 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 public class MessageModelAssembler implements RepresentationModelAssembler<Message, MessageModel> {
     @Override
     public MessageModel toModel(Message entity) {
-        MessageModel model = new MessageModel(entity.getId(), entity.getThread().getId(), entity.getSender().getId(), entity.getContent(), entity.getCreatedAt());
-        model.add(linkTo(methodOn(ThreadController.class).getMessage(entity.getThread().getId(), entity.getId())).withSelfRel());
-        model.add(linkTo(methodOn(ThreadController.class).getThread(entity.getThread().getId())).withRel("thread"));
-        model.add(linkTo(methodOn(UserController.class).getUser(entity.getSender().getId())).withRel("sender"));
+        return toModel(entity, FieldSelection.current());
+    }
+
+    public MessageModel toModel(Message entity, FieldSelection fields) {
+        UUID threadId = entity.getThread().getId();
+        UUID senderId = entity.getSender().getId();
+        MessageModel model = new MessageModel(
+                fields.includes("id") ? entity.getId() : null,
+                fields.includes("threadId") ? threadId : null,
+                fields.includes("senderId") ? senderId : null,
+                fields.includes("seq") ? entity.getSeq() : null,
+                fields.includes("content") ? entity.getContent() : null,
+                fields.includes("createdAt") ? entity.getCreatedAt() : null);
+        if (fields.includesLink("self")) {
+            model.add(linkTo(methodOn(ThreadController.class).getMessage(threadId, entity.getId())).withSelfRel());
+        }
+        if (fields.includesLink("thread")) {
+            model.add(linkTo(methodOn(ThreadController.class).getThread(threadId)).withRel("thread"));
+        }
+        if (fields.includesLink("sender")) {
+            model.add(linkTo(methodOn(UserController.class).getUser(senderId)).withRel("sender"));
+        }
         return model;
     }
 }
@@ -1,16 +1,12 @@
 package com.georgk.unfold.web.assembler;
 
 import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.web.FieldSelection;
 import com.georgk.unfold.web.ThreadController;
-import com.georgk.unfold.web.UserController;
 import com.georgk.unfold.web.model.ThreadModel;
-import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.UUID;
-
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
@@ -18,13 +14,51 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 public class ThreadModelAssembler implements RepresentationModelAssembler<MessageThread, ThreadModel> {
     @Override
     public ThreadModel toModel(MessageThread entity) {
-        List<UUID> participantIds = entity.getParticipants().stream().map(p -> p.getId()).toList();
-        ThreadModel model = new ThreadModel(entity.getId(), entity.getType(), entity.getName(), participantIds, entity.getCreatedAt(), entity.getUpdatedAt());
-        Link self = linkTo(methodOn(ThreadController.class).getThread(entity.getId())).withSelfRel();
-        model.add(self);
-        model.add(linkTo(methodOn(ThreadController.class).listMessages(entity.getId(), null, null)).withRel("messages"));
-        model.add(linkTo(methodOn(ThreadController.class).postMessage(entity.getId(), null)).withRel("send-message"));
-        participantIds.forEach(uid -> model.add(linkTo(methodOn(UserController.class).getUser(uid)).withRel("participant")));
+        return toModel(entity, FieldSelection.current());
+    }
+
+    public ThreadModel toModel(MessageThread entity, FieldSelection fields) {
+        ThreadModel.LastMessage lastMessage = entity.getLastMessageId() == null || !fields.includes("lastMessage") ? null : new ThreadModel.LastMessage(
+                entity.getLastMessageId(), entity.getLastMessageSenderId(), entity.getMessageSeq(), entity.getLastMessagePreview());
+        ThreadModel model = new ThreadModel(
+                fields.includes("id") ? entity.getId() : null,
+                fields.includes("type") ? entity.getType() : null,
+                fields.includes("name") ? entity.getName() : null,
+                fields.includes("participantCount") ? entity.getParticipantCount() : null,
+                fields.includes("messageCount") ? entity.getMessageCount() : null,
+                lastMessage,
+                fields.includes("createdAt") ? entity.getCreatedAt() : null,
+                fields.includes("updatedAt") ? entity.getUpdatedAt() : null);
+        if (fields.includesLink("self")) {
+            model.add(linkTo(methodOn(ThreadController.class).getThread(entity.getId())).withSelfRel());
+        }
+        if (fields.includesLink("messages")) {
+            model.add(linkTo(methodOn(ThreadController.class).listMessages(entity.getId(), null, null)).withRel("messages"));
+        }
+        if (fields.includesLink("send-message")) {
+            model.add(linkTo(methodOn(ThreadController.class).postMessage(entity.getId(), null, null)).withRel("send-message"));
+        }
+        if (fields.includesLink("participants")) {
+            model.add(linkTo(methodOn(ThreadController.class).listParticipants(entity.getId(), null, null)).withRel("participants"));
+        }
+        if (fields.includesLink("mark-read")) {
+            model.add(linkTo(methodOn(ThreadController.class).markRead(entity.getId(), null)).withRel("mark-read"));
+        }
+        if (entity.getLastMessageId() != null && fields.includesLink("last-message")) {
+            model.add(linkTo(methodOn(ThreadController.class).getMessage(entity.getId(), entity.getLastMessageId())).withRel("last-message"));
+        }
+        return model;
+    }
+
+    /**
+     * Thread as seen by one participant whose read cursor is at {@code lastReadSeq}.
+     */
+    public ThreadModel toModel(MessageThread entity, long lastReadSeq) {
+        FieldSelection fields = FieldSelection.current();
+        ThreadModel model = toModel(entity, fields);
+        if (fields.includes("unreadCount")) {
+            model.setUnreadCount(Math.max(0, entity.getMessageSeq() - lastReadSeq));
+        }
         return model;
     }
 }
@@ -1,9 +1,9 @@
 package com.georgk.unfold.web.assembler;
 
 import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.web.FieldSelection;
 import com.georgk.unfold.web.UserController;
 import com.georgk.unfold.web.model.UserModel;
-import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
 
@@ -14,10 +14,20 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 public class UserModelAssembler implements RepresentationModelAssembler<UserAccount, UserModel> {
     @Override
     public UserModel toModel(UserAccount entity) {
-        UserModel model = new UserModel(entity.getId(), entity.getUsername(), entity.getCreatedAt());
-        Link self = linkTo(methodOn(UserController.class).getUser(entity.getId())).withSelfRel();
-        model.add(self);
-        model.add(linkTo(methodOn(UserController.class).listThreadsForUser(entity.getId(), null, null)).withRel("threads"));
+        return toModel(entity, FieldSelection.current());
+    }
+
+    public UserModel toModel(UserAccount entity, FieldSelection fields) {
+        UserModel model = new UserModel(
+                fields.includes("id") ? entity.getId() : null,
+                fields.includes("username") ? entity.getUsername() : null,
+                fields.includes("createdAt") ? entity.getCreatedAt() : null);
+        if (fields.includesLink("self")) {
+            model.add(linkTo(methodOn(UserController.class).getUser(entity.getId())).withSelfRel());
+        }
+        if (fields.includesLink("threads")) {
+            model.add(linkTo(methodOn(UserController.class).listThreadsForUser(entity.getId(), null, null)).withRel("threads"));
+        }
         return model;
     }
 }
@@ -1,21 +1,25 @@
 package com.georgk.unfold.web.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.hateoas.RepresentationModel;
 
 import java.time.Instant;
 import java.util.UUID;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class MessageModel extends RepresentationModel<MessageModel> {
     private UUID id;
     private UUID threadId;
     private UUID senderId;
+    private Long seq;
     private String content;
     private Instant createdAt;
 
-    public MessageModel(UUID id, UUID threadId, UUID senderId, String content, Instant createdAt) {
+    public MessageModel(UUID id, UUID threadId, UUID senderId, Long seq, String content, Instant createdAt) {
         this.id = id;
         this.threadId = threadId;
         this.senderId = senderId;
+        this.seq = seq;
         this.content = content;
         this.createdAt = createdAt;
     }
@@ -34,6 +38,10 @@ public class MessageModel extends RepresentationModel<MessageModel> {
         return senderId;
     }
 
+    public Long getSeq() {
+        return seq;
+    }
+
     public String getContent() {
         return content;
     }
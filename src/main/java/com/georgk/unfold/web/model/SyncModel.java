@@ -0,0 +1,44 @@
+package com.georgk.unfold.web.model;
+
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+import java.util.UUID;
+
+public class SyncModel extends RepresentationModel<SyncModel> {
+    private String token;
+    private boolean full; // threads is the complete list, replacing the client's, not changes since the token
+    private List<ThreadModel> threads;
+    private List<MessageModel> messages;
+    private List<UUID> truncatedThreadIds; // threads with more new messages than returned
+
+    public SyncModel(String token, boolean full, List<ThreadModel> threads, List<MessageModel> messages, List<UUID> truncatedThreadIds) {
+        this.token = token;
+        this.full = full;
+        this.threads = threads;
+        this.messages = messages;
+        this.truncatedThreadIds = truncatedThreadIds;
+    }
+
+    public SyncModel() {}
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public List<ThreadModel> getThreads() {
+        return threads;
+    }
+
+    public List<MessageModel> getMessages() {
+        return messages;
+    }
+
+    public List<UUID> getTruncatedThreadIds() {
+        return truncatedThreadIds;
+    }
+}
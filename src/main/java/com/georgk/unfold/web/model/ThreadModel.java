@@ -1,25 +1,35 @@
 package com.georgk.unfold.web.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.georgk.unfold.domain.ThreadType;
 import org.springframework.hateoas.RepresentationModel;
 
 import java.time.Instant;
-import java.util.List;
 import java.util.UUID;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ThreadModel extends RepresentationModel<ThreadModel> {
+
+    public record LastMessage(UUID id, UUID senderId, long seq, String preview) {}
+
     private UUID id;
     private ThreadType type;
     private String name;
-    private List<UUID> participantIds;
+    private Integer participantCount;
+    private Long messageCount;
+    private LastMessage lastMessage; // null until the first message is posted
     private Instant createdAt;
     private Instant updatedAt;
+    private Long unreadCount; // only set when listed for a specific user
 
-    public ThreadModel(UUID id, ThreadType type, String name, List<UUID> participantIds, Instant createdAt, Instant updatedAt) {
+    public ThreadModel(UUID id, ThreadType type, String name, Integer participantCount, Long messageCount, LastMessage lastMessage,
+                       Instant createdAt, Instant updatedAt) {
         this.id = id;
         this.type = type;
         this.name = name;
-        this.participantIds = participantIds;
+        this.participantCount = participantCount;
+        this.messageCount = messageCount;
+        this.lastMessage = lastMessage;
         this.createdAt = createdAt;
         this.updatedAt = updatedAt;
     }
@@ -38,8 +48,16 @@ public class ThreadModel extends RepresentationModel<ThreadModel> {
         return name;
     }
 
-    public List<UUID> getParticipantIds() {
-        return participantIds;
+    public Integer getParticipantCount() {
+        return participantCount;
+    }
+
+    public Long getMessageCount() {
+        return messageCount;
+    }
+
+    public LastMessage getLastMessage() {
+        return lastMessage;
     }
 
     public Instant getCreatedAt() {
@@ -49,4 +67,12 @@ public class ThreadModel extends RepresentationModel<ThreadModel> {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
+
+    public Long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
 }
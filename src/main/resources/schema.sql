@@ -0,0 +1,58 @@
+-- Runs after Hibernate's ddl-auto (spring.jpa.defer-datasource-initialization) for the
+-- PostgreSQL-specific objects that JPA mappings cannot express. Every statement must be idempotent.
+-- DO bodies are single-quoted: the script is split on semicolons outside of quotes.
+
+-- Full-text search over message content, maintained by PostgreSQL on every insert. On a database
+-- with existing messages this is a one-off migration (a table rewrite and an index build under
+-- ACCESS EXCLUSIVE) to run by hand before upgrading, see "Upgrading an Existing Database" in the README.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+CREATE INDEX IF NOT EXISTS idx_messages_search ON messages USING gin (search_vector);
+
+-- participant_count arrived after threads already existed and was added with 0; count those threads'
+-- participants once. A thread always has participants, so later startups find nothing to update.
+UPDATE threads t SET participant_count = (SELECT count(*) FROM thread_participants tp WHERE tp.thread_id = t.id)
+WHERE t.participant_count = 0 AND EXISTS (SELECT 1 FROM thread_participants tp WHERE tp.thread_id = t.id);
+
+-- Message sequence numbers arrived after messages already existed: Hibernate adds messages.seq as a
+-- nullable column, and threads whose messages predate it still have message_seq 0. Number those
+-- messages in order of creation, count them into message_seq, then make seq NOT NULL. Runs once, while
+-- seq is still nullable; the ALTER takes an ACCESS EXCLUSIVE lock on messages.
+DO 'BEGIN
+    IF EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = ''messages''::regclass AND attname = ''seq'' AND NOT attnotnull) THEN
+        UPDATE messages m SET seq = n.seq
+        FROM (SELECT m2.id, row_number() OVER (PARTITION BY m2.thread_id ORDER BY m2.created_at, m2.id) AS seq
+              FROM messages m2 JOIN threads t ON t.id = m2.thread_id
+              WHERE t.message_seq = 0) n
+        WHERE m.id = n.id;
+        UPDATE threads t SET message_seq = (SELECT count(*) FROM messages m WHERE m.thread_id = t.id)
+        WHERE t.message_seq = 0 AND EXISTS (SELECT 1 FROM messages m WHERE m.thread_id = t.id);
+        ALTER TABLE messages ALTER COLUMN seq SET NOT NULL;
+    END IF;
+END';
+
+-- Per-participant read cursor: sequence number of the last message the participant has read
+ALTER TABLE thread_participants ADD COLUMN IF NOT EXISTS last_read_seq bigint NOT NULL DEFAULT 0;
+
+-- Change tracking for GET /users/{id}/sync: the transaction that last changed a row. A sync token is
+-- the snapshot of the previous sync, and a row changed since then iff its transaction is not visible
+-- in that snapshot (pg_visible_in_snapshot), which is exact even for transactions that were still
+-- running when the token was issued. The columns are added without a default, which needs no table
+-- rewrite, and get it afterwards, for new rows only; rows that predate them stay NULL and are read as
+-- frozen (xid 2), visible in every snapshot but the initial one. Each ALTER takes an ACCESS EXCLUSIVE
+-- lock, so they only run while a column or its default is missing.
+DO 'BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = ''threads''::regclass AND attname = ''change_xid'' AND atthasdef) THEN
+        ALTER TABLE threads ADD COLUMN IF NOT EXISTS change_xid xid8;
+        ALTER TABLE threads ALTER COLUMN change_xid SET DEFAULT pg_current_xact_id();
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = ''thread_participants''::regclass AND attname = ''change_xid'' AND atthasdef) THEN
+        ALTER TABLE thread_participants ADD COLUMN IF NOT EXISTS change_xid xid8;
+        ALTER TABLE thread_participants ALTER COLUMN change_xid SET DEFAULT pg_current_xact_id();
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = ''messages''::regclass AND attname = ''created_xid'' AND atthasdef) THEN
+        ALTER TABLE messages ADD COLUMN IF NOT EXISTS created_xid xid8;
+        ALTER TABLE messages ALTER COLUMN created_xid SET DEFAULT pg_current_xact_id();
+    END IF;
+END';
+CREATE INDEX IF NOT EXISTS idx_thread_participants_user ON thread_participants (user_id);
@@ -0,0 +1,139 @@
+package com.georgk.unfold;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of the search endpoints over a synthetic dataset. Opt-in, since seeding takes a while:
+ * <pre>
+ * mvn test -Dtest=MessageSearchBenchmarkIT -Dbench.messages=10000000
+ * </pre>
+ * Messages are 8 to 16 words drawn from a skewed 5000-word vocabulary, spread over group threads of
+ * four members. Requests go through HTTP one at a time and p99 must stay below 50ms.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "messaging.admission.enabled=false")
+@Import(PostgresContainerConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "bench.messages", matches = "\\d+")
+public class MessageSearchBenchmarkIT {
+
+    private static final int USERS = 20_000;
+    private static final int THREADS = 100_000;
+    private static final int SEED_BATCH = 1_000_000;
+    private static final int WARMUP = 200;
+    private static final int SAMPLES = 2_000;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    List<UUID> users;
+    List<UUID> threads;
+
+    @BeforeAll
+    void seed() {
+        long messages = Long.getLong("bench.messages");
+        jdbc.update("INSERT INTO users (id, username, created_at) SELECT gen_random_uuid(), 'bench-user-' || g, now() FROM generate_series(1, ?) g", USERS);
+        jdbc.execute("CREATE TABLE bench_users AS SELECT row_number() OVER (ORDER BY id) AS n, id FROM users WHERE username LIKE 'bench-user-%'");
+        jdbc.update("INSERT INTO threads (id, type, name, participant_count, created_at, updated_at) SELECT gen_random_uuid(), 'GROUP', 'bench-thread-' || g, 4, now(), now() FROM generate_series(1, ?) g", THREADS);
+        jdbc.execute("CREATE TABLE bench_threads AS SELECT row_number() OVER (ORDER BY id) AS n, id FROM threads WHERE name LIKE 'bench-thread-%'");
+        jdbc.update("""
+                INSERT INTO thread_participants (thread_id, user_id)
+                SELECT t.id, u.id
+                FROM bench_threads t
+                CROSS JOIN generate_series(0, 3) k
+                JOIN bench_users u ON u.n = ((t.n * 4 + k) % ?) + 1
+                """, USERS);
+        for (long from = 1; from <= messages; from += SEED_BATCH) {
+            long to = Math.min(messages, from + SEED_BATCH - 1);
+            jdbc.update("""
+                    INSERT INTO messages (id, thread_id, sender_id, seq, content, created_at)
+                    SELECT gen_random_uuid(), t.id, u.id, (g - 1) / ? + 1,
+                           -- 8 to 16 words; referencing g keeps the subquery per row instead of evaluated once
+                           (SELECT string_agg('w' || floor(power(random(), 3) * 5000)::int, ' ')
+                            FROM generate_series(1, 8 + g % 9)),
+                           now() - make_interval(secs => g)
+                    FROM generate_series(?, ?) g
+                    JOIN bench_threads t ON t.n = (g - 1) % ? + 1
+                    JOIN bench_users u ON u.n = ((t.n * 4) % ?) + 1
+                    """, THREADS, from, to, THREADS, USERS);
+        }
+        jdbc.execute("""
+                UPDATE threads t SET message_seq = m.seq
+                FROM (SELECT thread_id, max(seq) AS seq FROM messages GROUP BY thread_id) m
+                WHERE m.thread_id = t.id
+                """);
+        jdbc.execute("ANALYZE");
+        users = jdbc.queryForList("SELECT id FROM bench_users WHERE n % 97 = 0", UUID.class);
+        threads = jdbc.queryForList("SELECT id FROM bench_threads WHERE n % 997 = 0", UUID.class);
+    }
+
+    @Test
+    void userSearchP99Below50ms() {
+        String[] queries = {"w1200", "w40 w41", "w3000 OR w3001", "\"w7 w8\""};
+        double p99 = measure(i -> "/users/" + users.get(i % users.size()) + "/search?q=" + queries[i % queries.length] + "&size=20");
+        assertThat(p99).isLessThan(50.0);
+    }
+
+    @Test
+    void threadSearchP99Below50ms() {
+        double p99 = measure(i -> {
+            int n = i % threads.size();
+            UUID threadId = threads.get(n);
+            UUID member = jdbc.queryForObject("SELECT user_id FROM thread_participants WHERE thread_id = ? LIMIT 1", UUID.class, threadId);
+            return "/threads/" + threadId + "/search?userId=" + member + "&q=w" + (i % 50) + "&size=20";
+        });
+        assertThat(p99).isLessThan(50.0);
+    }
+
+    private interface RequestPath {
+        String forIteration(int i);
+    }
+
+    private double measure(RequestPath path) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.valueOf(MediaTypes.HAL_JSON_VALUE)));
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+        String base = "http://localhost:" + port;
+
+        long[] nanos = new long[SAMPLES];
+        for (int i = 0; i < WARMUP + SAMPLES; i++) {
+            String url = base + path.forIteration(i);
+            long start = System.nanoTime();
+            ResponseEntity<Map> resp = rest.exchange(url, HttpMethod.GET, request, Map.class);
+            long elapsed = System.nanoTime() - start;
+            assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+            if (i >= WARMUP) {
+                nanos[i - WARMUP] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[SAMPLES / 2] / 1e6;
+        double p99 = nanos[(int) (SAMPLES * 0.99)] / 1e6;
+        System.out.printf("search latency over %d requests: p50=%.2fms p99=%.2fms max=%.2fms%n",
+                SAMPLES, p50, p99, nanos[SAMPLES - 1] / 1e6);
+        return p99;
+    }
+}
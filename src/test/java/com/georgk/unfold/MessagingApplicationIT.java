@@ -1,5 +1,9 @@
 package com.georgk.unfold;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -8,35 +12,25 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.hateoas.MediaTypes;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.*;
-import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
-import org.springframework.boot.test.context.TestConfiguration;
-import org.springframework.context.annotation.Bean;
-import org.testcontainers.containers.PostgreSQLContainer;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(PostgresContainerConfig.class)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class MessagingApplicationIT {
 
-    @TestConfiguration(proxyBeanMethods = false)
-    static class ContainersConfig {
-        @Bean
-        @ServiceConnection
-        PostgreSQLContainer<?> postgres() {
-            return new PostgreSQLContainer<>("postgres:16")
-                    .withDatabaseName("app")
-                    .withUsername("postgres")
-                    .withPassword("postgres");
-        }
-    }
-
     @LocalServerPort
     int port;
 
@@ -79,8 +73,12 @@ public class MessagingApplicationIT {
         assertThat(items).hasSize(2);
 
         // Create group thread with initial message
-        UUID groupId = createGroup(List.of(alice, bob, carol), "Team Chat", alice, "Welcome team!");
-        assertThat(groupId).isNotNull();
+        Map<String, Object> group = createGroupResponse(List.of(alice, bob, carol), "Team Chat", alice, "Welcome team!");
+        UUID groupId = UUID.fromString(group.get("id").toString());
+        // the response already carries the summary of the initial message
+        assertThat(group.get("messageCount")).isEqualTo(1);
+        assertThat(((Map<?, ?>) group.get("lastMessage")).get("preview")).isEqualTo("Welcome team!");
+        assertThat((Map<String, Object>) group.get("_links")).containsKey("last-message");
 
         // Post more messages
         postMessage(groupId, bob, "Hello all!");
@@ -96,7 +94,23 @@ public class MessagingApplicationIT {
         assertThat(threadResp.getStatusCode().is2xxSuccessful()).isTrue();
         @SuppressWarnings("unchecked")
         Map<String, Object> links = (Map<String, Object>) threadResp.getBody().get("_links");
-        assertThat(links).containsKeys("self", "messages", "send-message");
+        assertThat(links).containsKeys("self", "messages", "send-message", "participants");
+        assertThat(threadResp.getBody().get("participantCount")).isEqualTo(3);
+
+        // Participants are paged rather than embedded in the thread
+        ResponseEntity<Map> participantsResp = rest.exchange(baseUrl() + "/threads/" + groupId + "/participants?page=0&size=2", HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(participantsResp.getStatusCode().is2xxSuccessful()).isTrue();
+        Map<?, ?> participantsPage = (Map<?, ?>) participantsResp.getBody().get("page");
+        assertThat(participantsPage.get("totalElements")).isEqualTo(3);
+        assertThat((List<?>) ((Map<?, ?>) participantsResp.getBody().get("_embedded")).get("userModelList")).hasSize(2);
+
+        // input longer than its column is a bad request, not a conflict
+        Map<String, Object> tooLong = Map.of("senderId", bob.toString(), "content", "x".repeat(4001));
+        ResponseEntity<Map> longMessage = rest.exchange(baseUrl() + "/threads/" + groupId + "/messages", HttpMethod.POST, new HttpEntity<>(tooLong, halJsonHeaders), Map.class);
+        assertThat(longMessage.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        Map<String, Object> longName = Map.of("participantIds", List.of(alice.toString(), bob.toString(), carol.toString()), "name", "x".repeat(201));
+        ResponseEntity<Map> longGroup = rest.exchange(baseUrl() + "/threads/group", HttpMethod.POST, new HttpEntity<>(longName, halJsonHeaders), Map.class);
+        assertThat(longGroup.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
 
         // Actuator health
         ResponseEntity<Map> health = rest.getForEntity(baseUrl() + "/actuator/health", Map.class);
@@ -104,6 +118,336 @@ public class MessagingApplicationIT {
         assertThat(((Map<?, ?>) health.getBody()).get("status")).isIn("UP", "DOWN", "UNKNOWN"); // should be UP
     }
 
+    @Test
+    void concurrentDirectThreadCreationYieldsOneThreadPerPair() throws Exception {
+        List<UUID> users = IntStream.range(0, 8).mapToObj(i -> createUser("race-" + i)).toList();
+        int callsPerPair = 100;
+
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        Map<Integer, List<Future<UUID>>> callsByPair = new HashMap<>();
+        try {
+            for (int n = 0; n < callsPerPair; n++) {
+                for (int i = 0; i < users.size(); i++) {
+                    for (int j = i + 1; j < users.size(); j++) {
+                        // alternate argument order so both directions hit the same key
+                        UUID a = users.get((n & 1) == 0 ? i : j);
+                        UUID b = users.get((n & 1) == 0 ? j : i);
+                        callsByPair.computeIfAbsent(i * users.size() + j, k -> new ArrayList<>())
+                                .add(pool.submit(() -> putDirect(a, b)));
+                    }
+                }
+            }
+            Set<UUID> allThreadIds = new HashSet<>();
+            for (List<Future<UUID>> calls : callsByPair.values()) {
+                Set<UUID> threadIds = new HashSet<>();
+                for (Future<UUID> call : calls) {
+                    threadIds.add(call.get());
+                }
+                assertThat(threadIds).hasSize(1);
+                allThreadIds.addAll(threadIds);
+            }
+            assertThat(allThreadIds).hasSize(callsByPair.size());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ResponseEntity<Map> thread = rest.exchange(baseUrl() + "/threads/" + putDirect(users.get(0), users.get(1)), HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(thread.getBody().get("participantCount")).isEqualTo(2);
+    }
+
+    @Test
+    void retriedMessageWithIdempotencyKeyIsNotDuplicated() {
+        UUID dan = createUser("idem-dan");
+        UUID eve = createUser("idem-eve");
+        UUID threadId = putDirect(dan, eve);
+
+        // HttpHeaders(HttpHeaders) is a view of the shared headers, not a copy
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(halJsonHeaders);
+        headers.set("Idempotency-Key", UUID.randomUUID().toString());
+        Map<String, Object> req = Map.of("senderId", dan.toString(), "content", "Sent once");
+        ResponseEntity<Map> first = rest.exchange(baseUrl() + "/threads/" + threadId + "/messages", HttpMethod.POST, new HttpEntity<>(req, headers), Map.class);
+        ResponseEntity<Map> retry = rest.exchange(baseUrl() + "/threads/" + threadId + "/messages", HttpMethod.POST, new HttpEntity<>(req, headers), Map.class);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody().get("id")).isEqualTo(first.getBody().get("id"));
+
+        Map<?, ?> page = (Map<?, ?>) getMessages(threadId, 0, 10).get("page");
+        assertThat(page.get("totalElements")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRetriesWithIdempotencyKeyReturnTheOriginal() throws Exception {
+        UUID sam = createUser("idem-race-sam");
+        UUID tia = createUser("idem-race-tia");
+        UUID threadId = putDirect(sam, tia);
+        int keysPerSender = 4;
+        int copiesPerKey = 4;
+
+        ExecutorService pool = Executors.newFixedThreadPool(keysPerSender * copiesPerKey * 2);
+        List<List<Future<ResponseEntity<Map>>>> callsByKey = new ArrayList<>();
+        try {
+            for (UUID sender : List.of(sam, tia)) {
+                for (int k = 0; k < keysPerSender; k++) {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.putAll(halJsonHeaders);
+                    headers.set("Idempotency-Key", UUID.randomUUID().toString());
+                    HttpEntity<Map<String, Object>> req = new HttpEntity<>(Map.of("senderId", sender.toString(), "content", "Sent once"), headers);
+                    List<Future<ResponseEntity<Map>>> calls = new ArrayList<>();
+                    for (int c = 0; c < copiesPerKey; c++) {
+                        calls.add(pool.submit(() -> rest.exchange(baseUrl() + "/threads/" + threadId + "/messages", HttpMethod.POST, req, Map.class)));
+                    }
+                    callsByKey.add(calls);
+                }
+            }
+            for (List<Future<ResponseEntity<Map>>> calls : callsByKey) {
+                Set<Object> messageIds = new HashSet<>();
+                for (Future<ResponseEntity<Map>> call : calls) {
+                    ResponseEntity<Map> resp = call.get();
+                    assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                    messageIds.add(resp.getBody().get("id"));
+                }
+                assertThat(messageIds).hasSize(1);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<?, ?> page = (Map<?, ?>) getMessages(threadId, 0, 20).get("page");
+        assertThat(page.get("totalElements")).isEqualTo(callsByKey.size());
+    }
+
+    @Test
+    void unreadCountsFollowReadCursors() {
+        UUID ivy = createUser("read-ivy");
+        UUID jon = createUser("read-jon");
+        UUID threadId = putDirect(ivy, jon);
+        postMessage(threadId, ivy, "one");
+        postMessage(threadId, ivy, "two");
+        postMessage(threadId, ivy, "three");
+
+        assertThat(unreadCount(ivy, threadId)).isEqualTo(0);
+        assertThat(unreadCount(jon, threadId)).isEqualTo(3);
+
+        // the inbox carries the thread summary, so no per-thread message listing is needed
+        Map<String, Object> summary = inboxEntry(jon, threadId);
+        assertThat(summary.get("messageCount")).isEqualTo(3);
+        Map<?, ?> lastMessage = (Map<?, ?>) summary.get("lastMessage");
+        assertThat(lastMessage.get("preview")).isEqualTo("three");
+        assertThat(lastMessage.get("senderId")).isEqualTo(ivy.toString());
+        assertThat(lastMessage.get("seq")).isEqualTo(3);
+
+        Map<String, Object> upToTwo = Map.of("userId", jon.toString(), "seq", 2);
+        ResponseEntity<Void> partial = rest.exchange(baseUrl() + "/threads/" + threadId + "/read", HttpMethod.PUT, new HttpEntity<>(upToTwo, halJsonHeaders), Void.class);
+        assertThat(partial.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(unreadCount(jon, threadId)).isEqualTo(1);
+
+        Map<String, Object> all = Map.of("userId", jon.toString());
+        rest.exchange(baseUrl() + "/threads/" + threadId + "/read", HttpMethod.PUT, new HttpEntity<>(all, halJsonHeaders), Void.class);
+        assertThat(unreadCount(jon, threadId)).isEqualTo(0);
+    }
+
+    private Object unreadCount(UUID userId, UUID threadId) {
+        return inboxEntry(userId, threadId).get("unreadCount");
+    }
+
+    private Map<String, Object> inboxEntry(UUID userId, UUID threadId) {
+        ResponseEntity<Map> resp = rest.exchange(baseUrl() + "/users/" + userId + "/threads", HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        Map<?, ?> embedded = (Map<?, ?>) resp.getBody().get("_embedded");
+        List<Map<String, Object>> items = (List<Map<String, Object>>) embedded.get("threadModelList");
+        return items.stream().filter(item -> item.get("id").equals(threadId.toString())).findFirst().orElseThrow();
+    }
+
+    @Test
+    void searchIsRankedPagedAndScopedToParticipants() {
+        UUID fay = createUser("search-fay");
+        UUID gus = createUser("search-gus");
+        UUID hal = createUser("search-hal");
+        UUID shared = putDirect(fay, gus);
+        UUID other = putDirect(gus, hal);
+        postMessage(shared, fay, "Deploy the kraken release tonight");
+        postMessage(shared, gus, "Kraken release notes: kraken kraken");
+        postMessage(shared, gus, "Unrelated lunch plans");
+        postMessage(other, hal, "Hal also mentions the kraken");
+
+        // fay only sees matches from her own threads, best match first, one per page
+        Map<String, Object> first = search("/users/" + fay + "/search?q=kraken&size=1");
+        assertThat(searchContents(first)).containsExactly("Kraken release notes: kraken kraken");
+        String next = ((Map<?, ?>) ((Map<?, ?>) first.get("_links")).get("next")).get("href").toString();
+        Map<String, Object> second = search(next.substring(next.indexOf("/users/")));
+        assertThat(searchContents(second)).containsExactly("Deploy the kraken release tonight");
+        assertThat(((Map<?, ?>) second.get("_links")).containsKey("next")).isFalse();
+
+        assertThat(searchContents(search("/threads/" + other + "/search?userId=" + hal + "&q=kraken")))
+                .containsExactly("Hal also mentions the kraken");
+        ResponseEntity<Map> outsider = rest.exchange(baseUrl() + "/threads/" + other + "/search?userId=" + fay + "&q=kraken", HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(outsider.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private Map<String, Object> search(String path) {
+        ResponseEntity<Map> resp = rest.exchange(baseUrl() + path, HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        return resp.getBody();
+    }
+
+    private List<String> searchContents(Map<String, Object> body) {
+        Map<?, ?> embedded = (Map<?, ?>) body.get("_embedded");
+        List<Map<String, Object>> items = (List<Map<String, Object>>) embedded.get("messageModelList");
+        return items.stream().map(item -> item.get("content").toString()).toList();
+    }
+
+    @Test
+    void binaryEncodingsAndSparseFieldsets() throws Exception {
+        UUID kim = createUser("compact-kim");
+        UUID lee = createUser("compact-lee");
+        UUID threadId = putDirect(kim, lee);
+        UUID messageId = postMessage(threadId, kim, "Compact hello");
+        String path = "/threads/" + threadId + "/messages?size=10";
+
+        JsonNode json = fetch(path, MediaTypes.HAL_JSON, new ObjectMapper());
+        for (JsonNode compact : List.of(fetch(path, MediaType.APPLICATION_CBOR, new CBORMapper()),
+                fetch(path, MediaType.valueOf("application/x-jackson-smile"), new SmileMapper()))) {
+            JsonNode message = compact.at("/_embedded/messageModelList/0");
+            assertThat(message.get("content").asText()).isEqualTo("Compact hello");
+            // UUIDs travel as 16 binary bytes instead of 36 characters
+            ByteBuffer id = ByteBuffer.wrap(message.get("id").binaryValue());
+            assertThat(new UUID(id.getLong(), id.getLong())).isEqualTo(messageId);
+            assertThat(message.at("/_links/self/href")).isEqualTo(json.at("/_embedded/messageModelList/0/_links/self/href"));
+            assertThat(compact.get("page")).isEqualTo(json.get("page"));
+        }
+
+        JsonNode sparse = fetch(path + "&fields=id,content,_links.self", MediaTypes.HAL_JSON, new ObjectMapper());
+        JsonNode message = sparse.at("/_embedded/messageModelList/0");
+        assertThat(message.fieldNames()).toIterable().containsExactlyInAnyOrder("id", "content", "_links");
+        assertThat(message.get("_links").fieldNames()).toIterable().containsExactly("self");
+        assertThat(sparse.at("/_links/self/href").asText()).contains("fields=");
+    }
+
+    private JsonNode fetch(String path, MediaType accept, ObjectMapper mapper) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        ResponseEntity<byte[]> resp = rest.exchange(baseUrl() + path, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(resp.getHeaders().getContentType().isCompatibleWith(accept)).isTrue();
+        return mapper.readTree(resp.getBody());
+    }
+
+    @Test
+    void syncReturnsOnlyChangesSinceToken() {
+        UUID mia = createUser("sync-mia");
+        UUID ned = createUser("sync-ned");
+        UUID oli = createUser("sync-oli");
+        UUID quiet = putDirect(mia, oli);
+        UUID busy = putDirect(mia, ned);
+        postMessage(quiet, oli, "old news");
+
+        // first sync: the full thread list, no messages
+        Map<String, Object> initial = sync(mia, null);
+        assertThat(syncedThreadIds(initial)).contains(quiet, busy);
+        assertThat((List<?>) initial.get("messages")).isEmpty();
+        assertThat(initial.get("full")).isEqualTo(true);
+
+        postMessage(busy, ned, "first");
+        postMessage(busy, ned, "second");
+        Map<String, Object> delta = sync(mia, (String) initial.get("token"));
+        assertThat(syncedThreadIds(delta)).containsExactly(busy);
+        assertThat(delta.get("full")).isEqualTo(false);
+        List<Map<String, Object>> messages = (List<Map<String, Object>>) delta.get("messages");
+        assertThat(messages).extracting(m -> m.get("content")).containsExactly("first", "second");
+        assertThat(((List<Map<String, Object>>) delta.get("threads")).get(0).get("unreadCount")).isEqualTo(2);
+
+        // nothing changed: an empty delta, and reading on another device shows up as a thread change only
+        Map<String, Object> empty = sync(mia, (String) delta.get("token"));
+        assertThat((List<?>) empty.get("threads")).isEmpty();
+        Map<String, Object> read = Map.of("userId", mia.toString());
+        rest.exchange(baseUrl() + "/threads/" + busy + "/read", HttpMethod.PUT, new HttpEntity<>(read, halJsonHeaders), Void.class);
+        Map<String, Object> afterRead = sync(mia, (String) empty.get("token"));
+        assertThat(syncedThreadIds(afterRead)).containsExactly(busy);
+        assertThat((List<?>) afterRead.get("messages")).isEmpty();
+        assertThat(((List<Map<String, Object>>) afterRead.get("threads")).get(0).get("unreadCount")).isEqualTo(0);
+
+        // a token of another cluster (a restore, a failover) says nothing about this one: full resync
+        String position = new String(Base64.getUrlDecoder().decode((String) afterRead.get("token")), StandardCharsets.US_ASCII);
+        String foreign = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("1-1" + position.substring(position.indexOf('/'))).getBytes(StandardCharsets.US_ASCII));
+        Map<String, Object> resync = sync(mia, foreign);
+        assertThat(resync.get("full")).isEqualTo(true);
+        assertThat(syncedThreadIds(resync)).contains(quiet, busy);
+        assertThat((List<?>) resync.get("messages")).isEmpty();
+
+        ResponseEntity<Map> invalid = rest.exchange(baseUrl() + "/users/" + mia + "/sync?token=bogus", HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private Map<String, Object> sync(UUID userId, String token) {
+        String url = baseUrl() + "/users/" + userId + "/sync" + (token == null ? "" : "?token=" + token);
+        ResponseEntity<Map> resp = rest.exchange(URI.create(url), HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(resp.getBody().get("token")).isNotNull();
+        return resp.getBody();
+    }
+
+    private List<UUID> syncedThreadIds(Map<String, Object> sync) {
+        List<Map<String, Object>> threads = (List<Map<String, Object>>) sync.get("threads");
+        return threads.stream().map(t -> UUID.fromString(t.get("id").toString())).toList();
+    }
+
+    @Test
+    void sharedThreadsAreGroupsOfAllGivenUsers() {
+        UUID pam = createUser("shared-pam");
+        UUID raj = createUser("shared-raj");
+        UUID sue = createUser("shared-sue");
+        UUID tom = createUser("shared-tom");
+        UUID all = createGroup(List.of(pam, raj, sue, tom), "All", pam, "hi all");
+        UUID trio = createGroup(List.of(pam, raj, sue), "Trio", pam, "hi trio");
+        UUID other = createGroup(List.of(pam, sue, tom), "Other", sue, "hi other");
+        putDirect(pam, raj); // direct threads are not groups
+
+        assertThat(sharedThreadIds(pam, raj.toString())).containsExactly(trio, all);
+        assertThat(sharedThreadIds(pam, raj + "&with=" + tom)).containsExactly(all);
+        assertThat(sharedThreadIds(tom, sue.toString())).containsExactly(other, all);
+        assertThat(sharedThreadIds(raj, createUser("shared-new").toString())).isEmpty();
+
+        ResponseEntity<Map> unknown = rest.exchange(baseUrl() + "/users/" + pam + "/threads/shared?with=" + UUID.randomUUID(),
+                HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(unknown.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        ResponseEntity<Map> self = rest.exchange(baseUrl() + "/users/" + pam + "/threads/shared?with=" + pam,
+                HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(self.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private List<UUID> sharedThreadIds(UUID userId, String with) {
+        ResponseEntity<Map> resp = rest.exchange(baseUrl() + "/users/" + userId + "/threads/shared?with=" + with,
+                HttpMethod.GET, new HttpEntity<>(halJsonHeaders), Map.class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        Map<?, ?> embedded = (Map<?, ?>) resp.getBody().get("_embedded");
+        if (embedded == null) {
+            return List.of();
+        }
+        List<Map<String, Object>> items = (List<Map<String, Object>>) embedded.get("threadModelList");
+        return items.stream().map(item -> UUID.fromString(item.get("id").toString())).toList();
+    }
+
+    @Test
+    void bulkImportReportsEveryRow() {
+        createUser("import-existing");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.valueOf("text/csv"));
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        String csv = "username\nimport-a\nimport-existing\n\"import-b\"\nimport-a\n\"\"\n";
+        ResponseEntity<String> resp = rest.exchange(baseUrl() + "/users:import", HttpMethod.POST, new HttpEntity<>(csv, headers), String.class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+
+        List<String> rows = resp.getBody().lines().toList();
+        assertThat(rows).hasSize(5);
+        assertThat(rows.get(0)).contains("\"line\":2", "\"username\":\"import-a\"", "\"status\":\"CREATED\"");
+        assertThat(rows.get(1)).contains("\"username\":\"import-existing\"", "\"status\":\"DUPLICATE\"");
+        assertThat(rows.get(2)).contains("\"username\":\"import-b\"", "\"status\":\"CREATED\"");
+        assertThat(rows.get(3)).contains("\"username\":\"import-a\"", "\"status\":\"DUPLICATE\"");
+        assertThat(rows.get(4)).contains("\"status\":\"INVALID\"");
+    }
+
     private UUID createUser(String username) {
         Map<String, String> req = Map.of("username", username);
         ResponseEntity<Map> resp = rest.exchange(URI.create(baseUrl() + "/users"), HttpMethod.POST, new HttpEntity<>(req, halJsonHeaders), Map.class);
@@ -119,6 +463,10 @@ public class MessagingApplicationIT {
     }
 
     private UUID createGroup(List<UUID> participantIds, String name, UUID senderId, String initialMessage) {
+        return UUID.fromString(createGroupResponse(participantIds, name, senderId, initialMessage).get("id").toString());
+    }
+
+    private Map<String, Object> createGroupResponse(List<UUID> participantIds, String name, UUID senderId, String initialMessage) {
         Map<String, Object> req = Map.of(
                 "participantIds", participantIds.stream().map(UUID::toString).toList(),
                 "name", name,
@@ -127,7 +475,7 @@ public class MessagingApplicationIT {
         );
         ResponseEntity<Map> resp = rest.exchange(baseUrl() + "/threads/group", HttpMethod.POST, new HttpEntity<>(req, halJsonHeaders), Map.class);
         assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.CREATED);
-        return UUID.fromString(resp.getBody().get("id").toString());
+        return resp.getBody();
     }
 
     private UUID postMessage(UUID threadId, UUID senderId, String content) {
@@ -0,0 +1,280 @@
+package com.georgk.unfold;
+
+import com.georgk.unfold.reactive.ReactiveReadConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JPA versus R2DBC read path under many concurrent readers. Opt-in, since it opens one HTTP
+ * connection per reader (raise {@code ulimit -n} accordingly):
+ * <pre>
+ * mvn test -Dtest=ReadPathBenchmarkIT -Dbench.readers=10000
+ * </pre>
+ * The test context serves the JPA path; a second application context on the same database runs
+ * with the {@code reactive} profile. After a warm-up, each reader is a virtual thread that sends a
+ * mix of message pages, single messages and inbox pages, one at a time. Reported per path: latency percentiles
+ * and the peak number of database connections, both opened (from {@code pg_stat_activity}) and
+ * checked out of the reading pool (Hikari or R2DBC pool gauges). Both pools hold 10 connections.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "messaging.admission.enabled=false",
+        "server.tomcat.max-connections=" + ReadPathBenchmarkIT.MAX_CONNECTIONS,
+        "server.tomcat.accept-count=" + ReadPathBenchmarkIT.ACCEPT_COUNT})
+@Import(PostgresContainerConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "bench.readers", matches = "\\d+")
+public class ReadPathBenchmarkIT {
+
+    static final int MAX_CONNECTIONS = 50_000;
+    static final int ACCEPT_COUNT = 5_000;
+
+    private static final int USERS = 2_000;
+    private static final int THREADS = 2_000;
+    private static final int MESSAGES_PER_THREAD = 200;
+    private static final int REQUESTS_PER_READER = 10; // the first one opens the connection and is not measured
+    private static final int WARMUP_READERS = 16;
+    private static final int WARMUP_REQUESTS = 5_000;
+    private static final String JDBC_DRIVER = "PostgreSQL JDBC Driver";
+    private static final String R2DBC_DRIVER = "r2dbc-postgresql";
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    JdbcConnectionDetails database;
+
+    @Autowired
+    MeterRegistry meters;
+
+    ConfigurableApplicationContext reactive;
+    List<UUID> users;
+    List<UUID> threads;
+    List<Map<String, Object>> messages;
+
+    @BeforeAll
+    void seed() {
+        jdbc.update("INSERT INTO users (id, username, created_at) SELECT gen_random_uuid(), 'read-bench-user-' || g, now() FROM generate_series(1, ?) g", USERS);
+        jdbc.execute("CREATE TABLE read_bench_users AS SELECT row_number() OVER (ORDER BY id) AS n, id FROM users WHERE username LIKE 'read-bench-user-%'");
+        jdbc.update("INSERT INTO threads (id, type, name, participant_count, created_at, updated_at) SELECT gen_random_uuid(), 'GROUP', 'read-bench-thread-' || g, 4, now(), now() - make_interval(secs => g) FROM generate_series(1, ?) g", THREADS);
+        jdbc.execute("CREATE TABLE read_bench_threads AS SELECT row_number() OVER (ORDER BY id) AS n, id FROM threads WHERE name LIKE 'read-bench-thread-%'");
+        jdbc.update("""
+                INSERT INTO thread_participants (thread_id, user_id)
+                SELECT t.id, u.id
+                FROM read_bench_threads t
+                CROSS JOIN generate_series(0, 3) k
+                JOIN read_bench_users u ON u.n = ((t.n * 4 + k) % ?) + 1
+                """, USERS);
+        jdbc.update("""
+                INSERT INTO messages (id, thread_id, sender_id, seq, content, created_at)
+                SELECT gen_random_uuid(), t.id, u.id, s, 'message ' || s || ' of thread ' || t.n, now()
+                FROM read_bench_threads t
+                CROSS JOIN generate_series(1, ?) s
+                JOIN read_bench_users u ON u.n = ((t.n * 4 + s % 4) % ?) + 1
+                """, MESSAGES_PER_THREAD, USERS);
+        jdbc.update("UPDATE threads SET message_seq = ? WHERE name LIKE 'read-bench-thread-%'", MESSAGES_PER_THREAD);
+        jdbc.execute("ANALYZE");
+        users = jdbc.queryForList("SELECT id FROM read_bench_users", UUID.class);
+        threads = jdbc.queryForList("SELECT id FROM read_bench_threads", UUID.class);
+        messages = jdbc.queryForList("SELECT thread_id, id FROM messages WHERE seq % 20 = 0 AND content LIKE '%of thread%'");
+
+        reactive = new SpringApplicationBuilder(MessagingApplication.class)
+                .profiles(ReactiveReadConfiguration.PROFILE)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + database.getJdbcUrl(),
+                        "--spring.datasource.username=" + database.getUsername(),
+                        "--spring.datasource.password=" + database.getPassword(),
+                        // its JDBC pool only serves writes here; named apart from the JPA path's connections
+                        "--spring.datasource.hikari.data-source-properties.ApplicationName=read-bench-reactive-context",
+                        "--spring.sql.init.mode=never",
+                        "--messaging.admission.enabled=false",
+                        "--server.tomcat.max-connections=" + MAX_CONNECTIONS,
+                        "--server.tomcat.accept-count=" + ACCEPT_COUNT);
+    }
+
+    @AfterAll
+    void stopReactive() {
+        if (reactive != null) {
+            reactive.close();
+        }
+    }
+
+    @Test
+    void bothPathsReturnTheSameRepresentations() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        String jpa = "http://localhost:" + port;
+        String r2dbc = "http://localhost:" + reactivePort();
+        for (int i = 0; i < 20; i++) {
+            String path = path(i);
+            String expected = get(client, jpa + path).body().replace(jpa, "");
+            String actual = get(client, r2dbc + path).body().replace(r2dbc, "");
+            assertThat(actual).as(path).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void concurrentReaders() throws Exception {
+        int readers = Integer.getInteger("bench.readers");
+        warmUp("http://localhost:" + port);
+        warmUp("http://localhost:" + reactivePort());
+        Result blocking = measure("http://localhost:" + port, readers, JDBC_DRIVER,
+                () -> meters.get("hikaricp.connections.active").gauge().value());
+        MeterRegistry reactiveMeters = reactive.getBean(MeterRegistry.class);
+        Result nonBlocking = measure("http://localhost:" + reactivePort(), readers, R2DBC_DRIVER,
+                () -> reactiveMeters.get("r2dbc.pool.acquired").gauge().value());
+        System.out.printf("%d concurrent readers, %d requests each%n", readers, REQUESTS_PER_READER - 1);
+        System.out.println(blocking.report("jpa  "));
+        System.out.println(nonBlocking.report("r2dbc"));
+        assertThat(blocking.failures()).isZero();
+        assertThat(nonBlocking.failures()).isZero();
+    }
+
+    private record Result(long[] nanos, int failures, double seconds, int peakOpen, int peakInUse) {
+        String report(String name) {
+            return String.format("%s: p50=%.1fms p99=%.1fms max=%.1fms throughput=%.0f/s failures=%d db connections: peak open=%d peak in use=%d",
+                    name, nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6, nanos[nanos.length - 1] / 1e6,
+                    nanos.length / seconds, failures, peakOpen, peakInUse);
+        }
+    }
+
+    // the same request mix from a few readers, so that both paths are compiled before measuring
+    private void warmUp(String base) throws Exception {
+        try (HttpClient client = HttpClient.newHttpClient();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int r = 0; r < WARMUP_READERS; r++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < WARMUP_REQUESTS / WARMUP_READERS; i++) {
+                        get(client, base + path(i));
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    private Result measure(String base, int readers, String driver, DoubleSupplier inUse) throws Exception {
+        long[] nanos = new long[readers * (REQUESTS_PER_READER - 1)];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        int[] peaks = new int[2];
+        Thread sampler = Thread.ofPlatform().start(() -> sampleConnections(driver, inUse, done, peaks));
+
+        long began;
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int r = 0; r < readers; r++) {
+                int reader = r;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_READER; i++) {
+                        long t0 = System.nanoTime();
+                        try {
+                            if (get(client, base + path(reader * REQUESTS_PER_READER + i)).statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        if (i > 0) {
+                            nanos[reader * (REQUESTS_PER_READER - 1) + i - 1] = System.nanoTime() - t0;
+                        }
+                    }
+                    return null;
+                });
+            }
+            began = System.nanoTime();
+            start.countDown();
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        done.set(true);
+        sampler.join();
+        Arrays.sort(nanos);
+        return new Result(nanos, failures.get(), seconds, peaks[0], peaks[1]);
+    }
+
+    // every 10ms: server connections opened by the driver, and connections checked out of the reading pool
+    private void sampleConnections(String driver, DoubleSupplier inUse, AtomicBoolean done, int[] peaks) {
+        String sql = """
+                SELECT count(*)
+                FROM pg_stat_activity
+                WHERE datname = current_database() AND application_name = '%s' AND pid <> pg_backend_pid()
+                """.formatted(driver);
+        try (Connection con = DriverManager.getConnection(database.getJdbcUrl(), database.getUsername(), database.getPassword());
+             Statement statement = con.createStatement()) {
+            while (!done.get()) {
+                try (ResultSet rs = statement.executeQuery(sql)) {
+                    rs.next();
+                    peaks[0] = Math.max(peaks[0], rs.getInt(1));
+                }
+                peaks[1] = Math.max(peaks[1], (int) inUse.getAsDouble());
+                Thread.sleep(10);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String path(int i) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (i % 3) {
+            case 0 -> "/threads/" + threads.get(random.nextInt(threads.size())) + "/messages?page=" + random.nextInt(MESSAGES_PER_THREAD / 20) + "&size=20";
+            case 1 -> {
+                Map<String, Object> message = messages.get(random.nextInt(messages.size()));
+                yield "/threads/" + message.get("thread_id") + "/messages/" + message.get("id");
+            }
+            default -> "/users/" + users.get(random.nextInt(users.size())) + "/threads?page=0&size=20";
+        };
+    }
+
+    private int reactivePort() {
+        return ((WebServerApplicationContext) reactive).getWebServer().getPort();
+    }
+
+    private static HttpResponse<String> get(HttpClient client, String url) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", MediaTypes.HAL_JSON_VALUE)
+                .timeout(Duration.ofSeconds(120))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
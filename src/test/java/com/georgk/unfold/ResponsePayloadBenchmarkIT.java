@@ -0,0 +1,173 @@
+package com.georgk.unfold;
+
+import com.georgk.unfold.activity.ActivityTracker;
+import com.georgk.unfold.domain.Message;
+import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.domain.ThreadType;
+import com.georgk.unfold.domain.UserAccount;
+import com.georgk.unfold.service.ThreadService;
+import com.georgk.unfold.web.AdmissionControl;
+import com.georgk.unfold.web.CompactMediaTypes;
+import com.georgk.unfold.web.RecentIdempotencyKeys;
+import com.georgk.unfold.web.ThreadController;
+import com.georgk.unfold.web.UserController;
+import com.georgk.unfold.web.assembler.MessageModelAssembler;
+import com.georgk.unfold.web.assembler.ThreadModelAssembler;
+import com.georgk.unfold.web.assembler.UserModelAssembler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Payload size and server-side cost of the standard page shapes (20 messages of a thread, 20
+ * threads of an inbox) per encoding, with and without a sparse fieldset. Runs against the web
+ * layer only, with a stubbed service, so no database is needed. Opt-in:
+ * <pre>
+ * mvn test -Dtest=ResponsePayloadBenchmarkIT -Dbench.payloads=20000
+ * </pre>
+ * The value is the number of measured requests per variant. Time is the mean per request through
+ * MockMvc, which includes building the models and links as well as serializing them.
+ */
+@WebMvcTest(controllers = {ThreadController.class, UserController.class}, properties = "messaging.admission.enabled=false")
+@Import({ActivityTracker.class, AdmissionControl.class, CompactMediaTypes.class, MessageModelAssembler.class, ThreadModelAssembler.class, UserModelAssembler.class, RecentIdempotencyKeys.class})
+@EnabledIfSystemProperty(named = "bench.payloads", matches = "\\d+")
+public class ResponsePayloadBenchmarkIT {
+
+    private static final int PAGE_SIZE = 20;
+    private static final List<MediaType> ENCODINGS = List.of(
+            MediaTypes.HAL_JSON, MediaType.APPLICATION_CBOR, MediaType.valueOf(CompactMediaTypes.SMILE_VALUE));
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    ThreadService service;
+
+    UUID threadId = UUID.randomUUID();
+    UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void stubService() {
+        List<UserAccount> users = IntStream.range(0, 4).mapToObj(i -> user("bench-user-" + i)).toList();
+        MessageThread thread = thread(threadId, "Team chat", 1_000);
+        List<Message> messages = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> Message.restored(UUID.randomUUID(), thread, users.get(i % users.size()), 1_000 - i,
+                        "Shipping the release candidate tonight, please review the migration notes before " + i,
+                        Instant.parse("2024-06-01T12:00:00Z").plusSeconds(i)))
+                .toList();
+        when(service.getMessages(eq(threadId), any())).thenReturn(new PageImpl<>(messages, PageRequest.of(0, PAGE_SIZE), 1_000));
+
+        List<MessageThread> threads = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> thread(UUID.randomUUID(), i % 2 == 0 ? null : "Group " + i, 50 + i))
+                .toList();
+        when(service.getThreadsForUser(eq(userId), any())).thenReturn(new PageImpl<>(threads, PageRequest.of(0, PAGE_SIZE), 200));
+        when(service.getLastReadSeqs(eq(userId), anyCollection()))
+                .thenReturn(threads.stream().collect(Collectors.toMap(MessageThread::getId, t -> t.getMessageSeq() - 3)));
+    }
+
+    @Test
+    void messagePage() throws Exception {
+        String path = "/threads/" + threadId + "/messages?size=" + PAGE_SIZE;
+        Map<String, Result> results = measure(path, path + "&fields=id,senderId,seq,content,createdAt");
+        assertSmallerThanHalJson(results);
+    }
+
+    @Test
+    void inboxPage() throws Exception {
+        String path = "/users/" + userId + "/threads?size=" + PAGE_SIZE;
+        Map<String, Result> results = measure(path, path + "&fields=id,name,lastMessage,unreadCount,_links.self");
+        assertSmallerThanHalJson(results);
+    }
+
+    private record Result(int bytes, double micros) {}
+
+    private Map<String, Result> measure(String fullPath, String sparsePath) throws Exception {
+        int iterations = Integer.getInteger("bench.payloads");
+        // warm up every variant before measuring any, so that the first one does not pay for JIT compilation
+        for (String path : List.of(fullPath, sparsePath)) {
+            for (MediaType encoding : ENCODINGS) {
+                for (int i = 0; i < iterations / 4; i++) {
+                    request(path, encoding);
+                }
+            }
+        }
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String path : List.of(fullPath, sparsePath)) {
+            for (MediaType encoding : ENCODINGS) {
+                results.put(encoding + (path == fullPath ? "" : " sparse"), run(path, encoding, iterations));
+            }
+        }
+        System.out.println(fullPath);
+        results.forEach((variant, r) -> System.out.printf("  %-36s %7d bytes %9.1f us/request%n", variant, r.bytes(), r.micros()));
+        return results;
+    }
+
+    private Result run(String path, MediaType encoding, int iterations) throws Exception {
+        int bytes = request(path, encoding);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            request(path, encoding);
+        }
+        return new Result(bytes, (System.nanoTime() - start) / 1e3 / iterations);
+    }
+
+    private int request(String path, MediaType encoding) throws Exception {
+        byte[] body = mvc.perform(get(path).accept(encoding)).andReturn().getResponse().getContentAsByteArray();
+        assertThat(body).isNotEmpty();
+        return body.length;
+    }
+
+    private static void assertSmallerThanHalJson(Map<String, Result> results) {
+        Function<String, Integer> bytes = variant -> results.get(variant).bytes();
+        int halJson = bytes.apply(MediaTypes.HAL_JSON_VALUE);
+        assertThat(bytes.apply(MediaType.APPLICATION_CBOR_VALUE)).isLessThan(halJson);
+        assertThat(bytes.apply(CompactMediaTypes.SMILE_VALUE)).isLessThan(halJson);
+        assertThat(bytes.apply(MediaTypes.HAL_JSON_VALUE + " sparse")).isLessThan(halJson);
+    }
+
+    private static UserAccount user(String username) {
+        UserAccount user = new UserAccount(username);
+        ReflectionTestUtils.setField(user, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(user, "createdAt", Instant.parse("2024-01-01T00:00:00Z"));
+        return user;
+    }
+
+    private static MessageThread thread(UUID id, String name, long messageSeq) {
+        MessageThread thread = new MessageThread(name == null ? ThreadType.DIRECT : ThreadType.GROUP, name, null);
+        ReflectionTestUtils.setField(thread, "id", id);
+        ReflectionTestUtils.setField(thread, "participantCount", name == null ? 2 : 4);
+        ReflectionTestUtils.setField(thread, "messageSeq", messageSeq);
+        ReflectionTestUtils.setField(thread, "lastMessageId", UUID.randomUUID());
+        ReflectionTestUtils.setField(thread, "lastMessageSenderId", UUID.randomUUID());
+        ReflectionTestUtils.setField(thread, "lastMessagePreview", "See you at the standup tomorrow morning");
+        ReflectionTestUtils.setField(thread, "createdAt", Instant.parse("2024-01-01T00:00:00Z"));
+        ReflectionTestUtils.setField(thread, "updatedAt", Instant.parse("2024-06-01T12:00:00Z"));
+        return thread;
+    }
+}
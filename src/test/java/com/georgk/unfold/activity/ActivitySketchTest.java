@@ -0,0 +1,73 @@
+package com.georgk.unfold.activity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivitySketchTest {
+
+    private final AtomicLong clockMillis = new AtomicLong(1_000_000);
+    private final ActivitySketch sketch = new ActivitySketch(Duration.ofSeconds(60), 6, 1024, 4, 3, clockMillis::get);
+
+    @Test
+    void findsHeavyHittersInSkewedStream() {
+        List<UUID> hot = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).toList();
+        for (int i = 0; i < 20_000; i++) {
+            sketch.record(UUID.randomUUID()); // long tail, one event each
+            if (i % 20 == 0) {
+                sketch.record(hot.get(0));
+            }
+            if (i % 40 == 0) {
+                sketch.record(hot.get(1));
+            }
+            if (i % 80 == 0) {
+                sketch.record(hot.get(2));
+            }
+        }
+
+        assertThat(sketch.top()).extracting(ActivitySketch.Count::id).containsExactlyElementsOf(hot);
+        // overcounts by collisions at most, never undercounts
+        assertThat(sketch.estimate(hot.get(0))).isBetween(1_000L, 1_100L);
+        assertThat(sketch.total()).isEqualTo(20_000 + 1_000 + 500 + 250);
+    }
+
+    @Test
+    void forgetsEventsOutsideTheWindow() {
+        UUID early = UUID.randomUUID();
+        UUID late = UUID.randomUUID();
+        for (int i = 0; i < 100; i++) {
+            sketch.record(early);
+        }
+        clockMillis.addAndGet(30_000);
+        for (int i = 0; i < 10; i++) {
+            sketch.record(late);
+        }
+        assertThat(sketch.top()).extracting(ActivitySketch.Count::id).containsExactly(early, late);
+
+        clockMillis.addAndGet(40_000); // early's slice has expired, late's has not
+        sketch.record(late);
+        assertThat(sketch.estimate(early)).isZero();
+        assertThat(sketch.estimate(late)).isEqualTo(11);
+        assertThat(sketch.top()).extracting(ActivitySketch.Count::id).containsExactly(late);
+        assertThat(sketch.total()).isEqualTo(11);
+    }
+
+    @Test
+    void newHeavyHitterDisplacesStaleEntries() {
+        List<UUID> old = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).toList();
+        old.forEach(id -> IntStream.range(0, 50).forEach(i -> sketch.record(id)));
+        clockMillis.addAndGet(61_000);
+
+        UUID newcomer = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            sketch.record(newcomer);
+        }
+        assertThat(sketch.top()).extracting(ActivitySketch.Count::id).containsExactly(newcomer);
+    }
+}
@@ -0,0 +1,85 @@
+package com.georgk.unfold.archive;
+
+import com.georgk.unfold.domain.MessageThread;
+import com.georgk.unfold.domain.ThreadType;
+import com.georgk.unfold.service.ArchiveUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentFilesTest {
+
+    private static final UUID SENDER = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSeqRangesAcrossBlocksAndSegments() throws Exception {
+        // small blocks and segments so that ranges span several of each
+        SegmentWriter writer = new SegmentWriter(16, 2_048);
+        List<ArchivedMessage> all = messages(1, 1_000);
+        for (int from = 0; from < all.size(); from += 100) {
+            writer.append(dir, from, all.subList(from, from + 100));
+        }
+        assertThat(SegmentWriter.segments(dir)).hasSizeGreaterThan(1);
+
+        SegmentReader reader = SegmentReader.open(dir);
+        assertThat(reader.lastSeq()).isEqualTo(1_000);
+        assertThat(reader.read(1, 1_000)).containsExactlyElementsOf(all);
+        assertThat(reader.read(95, 117)).extracting(ArchivedMessage::seq).containsExactlyElementsOf(LongStream.rangeClosed(95, 117).boxed().toList());
+        assertThat(reader.read(1_001, 1_100)).isEmpty();
+        assertThat(reader.find(all.get(733).id(), 1_000)).contains(all.get(733));
+        assertThat(reader.find(all.get(733).id(), 700)).isEmpty();
+    }
+
+    @Test
+    void dropsBlocksOfUncommittedBatchBeforeAppending() throws Exception {
+        SegmentWriter writer = new SegmentWriter(16, 1 << 20);
+        writer.append(dir, 0, messages(1, 50));
+        // written but never committed: the database watermark stayed at 50
+        writer.append(dir, 50, messages(51, 80));
+        List<ArchivedMessage> retried = messages(51, 80);
+        writer.append(dir, 50, retried);
+
+        SegmentReader reader = SegmentReader.open(dir);
+        assertThat(reader.read(1, 100)).extracting(ArchivedMessage::seq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 80).boxed().toList());
+        assertThat(reader.read(51, 80)).containsExactlyElementsOf(retried);
+    }
+
+    @Test
+    void emptyDirectoryHasNothingArchived() throws Exception {
+        SegmentReader reader = SegmentReader.open(dir.resolve("missing"));
+        assertThat(reader.lastSeq()).isZero();
+        assertThat(reader.read(1, 10)).isEmpty();
+    }
+
+    @Test
+    void archiveShortOfTheWatermarkIsUnavailable() throws Exception {
+        UUID threadId = UUID.randomUUID();
+        SegmentMessageArchive archive = new SegmentMessageArchive(dir.toString(), 16, null);
+        new SegmentWriter(16, 1 << 20).append(archive.threadDirectory(threadId), 0, messages(1, 50));
+        // the database says 80 messages were archived, the files hold 50
+        MessageThread thread = MessageThread.restored(threadId, ThreadType.GROUP, null, 3, 100, null, null, null, 80,
+                Instant.now(), Instant.now());
+
+        assertThatThrownBy(() -> archive.read(thread, 1, 20)).isInstanceOf(ArchiveUnavailableException.class);
+        assertThatThrownBy(() -> archive.find(thread, UUID.randomUUID())).isInstanceOf(ArchiveUnavailableException.class);
+    }
+
+    private static List<ArchivedMessage> messages(long fromSeq, long toSeq) {
+        return LongStream.rangeClosed(fromSeq, toSeq)
+                .mapToObj(seq -> new ArchivedMessage(UUID.randomUUID(), SENDER, seq, "message number " + seq + " ☃",
+                        Instant.ofEpochSecond(1_700_000_000L + seq, 123_456_789)))
+                .toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.georgk.unfold.membership;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressedBitmapTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void matchesSortedSetAcrossChunkKinds() {
+        // sparse values land in array chunks, the dense range turns its chunk into a bitmap
+        CompressedBitmap bitmap = new CompressedBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = i % 2 == 0 ? random.nextInt(1 << 24) : (3 << 16) + random.nextInt(10_000);
+            assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+        assertThat(bitmap.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+        assertThat(bitmap.contains(expected.first())).isTrue();
+        assertThat(bitmap.contains(-1)).isFalse();
+        assertThat(bitmap.add(expected.last())).isFalse();
+    }
+
+    @Test
+    void intersectsEveryCombinationOfChunkKinds() {
+        CompressedBitmap sparse = new CompressedBitmap();
+        CompressedBitmap dense = new CompressedBitmap();
+        CompressedBitmap denseToo = new CompressedBitmap();
+        TreeSet<Integer> sparseValues = new TreeSet<>();
+        TreeSet<Integer> denseValues = new TreeSet<>();
+        TreeSet<Integer> denseTooValues = new TreeSet<>();
+        for (int i = 0; i < 2_000; i++) {
+            int value = random.nextInt(3 << 16);
+            sparse.add(value);
+            sparseValues.add(value);
+        }
+        for (int value = 0; value < 3 << 16; value++) {
+            if (value % 3 == 0) {
+                dense.add(value);
+                denseValues.add(value);
+            }
+            if (value % 5 == 0) {
+                denseToo.add(value);
+                denseTooValues.add(value);
+            }
+        }
+
+        assertIntersection(sparse, dense, sparseValues, denseValues);      // array and bitmap
+        assertIntersection(dense, sparse, denseValues, sparseValues);
+        assertIntersection(dense, denseToo, denseValues, denseTooValues);  // bitmap and bitmap
+        assertIntersection(sparse, sparse, sparseValues, sparseValues);    // array and array
+        assertThat(sparse.and(new CompressedBitmap()).isEmpty()).isTrue();
+    }
+
+    @Test
+    void sizeStaysCloseToTwoBytesPerSparseValue() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value = 0; value < 4_000; value++) {
+            bitmap.add(value * 7);
+        }
+        // one array chunk, doubled capacity at most
+        assertThat(bitmap.sizeInBytes()).isLessThan(4_000 * 2 * 2 + 200);
+
+        for (int value = 0; value < 60_000; value++) {
+            bitmap.add(value);
+        }
+        // the first chunk is now a bitmap, which caps it at 8 KiB
+        assertThat(bitmap.sizeInBytes()).isLessThan(8_192 + 200);
+    }
+
+    private static void assertIntersection(CompressedBitmap a, CompressedBitmap b, TreeSet<Integer> aValues, TreeSet<Integer> bValues) {
+        TreeSet<Integer> expected = new TreeSet<>(aValues);
+        expected.retainAll(bValues);
+        CompressedBitmap result = a.and(b);
+        assertThat(result.cardinality()).isEqualTo(expected.size());
+        assertThat(result.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,130 @@
+package com.georgk.unfold.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.georgk.unfold.activity.ActivityTracker;
+import com.georgk.unfold.service.ThreadService;
+import com.georgk.unfold.web.assembler.MessageModelAssembler;
+import com.georgk.unfold.web.model.MessageModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdmissionFilterTest {
+
+    private final AtomicLong clockMicros = new AtomicLong(1_000_000);
+    private final AdmissionControl admission = new AdmissionControl(true, 1024,
+            new AdmissionControl.Limit("post-message per thread", 1, 10, 3),
+            new AdmissionControl.Limit("post-message per user", 2, 1, 2),
+            new AdmissionControl.Limit("list-threads per user", 3, 0.5, 2),
+            new AdmissionControl.Limit("search per user", 4, 0, 0),
+            clockMicros::get);
+    private final RecentIdempotencyKeys recentKeys = new RecentIdempotencyKeys(64);
+    private final AdmissionFilter filter = new AdmissionFilter(admission, new ObjectMapper());
+
+    @Test
+    void rejectsBeyondBurstUntilTokensRefill() throws Exception {
+        String path = "/users/" + UUID.randomUUID() + "/sync";
+        for (int i = 0; i < 2; i++) {
+            assertThat(send("GET", path).getStatus()).isEqualTo(200);
+        }
+        MockHttpServletResponse rejected = send("GET", path);
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(rejected.getContentAsString()).contains("\"status\":429", "list-threads per user");
+
+        clockMicros.addAndGet(2_000_000); // one token at half a token per second
+        assertThat(send("GET", path).getStatus()).isEqualTo(200);
+        assertThat(send("GET", path).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void keysAndLimitsHaveSeparateBuckets() throws Exception {
+        UUID user = UUID.randomUUID();
+        send("GET", "/users/" + user + "/threads");
+        send("GET", "/users/" + user + "/threads");
+        MockHttpServletResponse rejected = send("GET", "/users/" + user + "/threads");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2"); // half a token per second
+
+        assertThat(send("GET", "/users/" + UUID.randomUUID() + "/threads").getStatus()).isEqualTo(200);
+        assertThat(send("GET", "/users/" + user).getStatus()).isEqualTo(200);
+        // rate 0 disables the search limit
+        for (int i = 0; i < 10; i++) {
+            assertThat(send("GET", "/users/" + user + "/search").getStatus()).isEqualTo(200);
+        }
+        // the sender limit is checked by the controller, in its own bucket
+        admission.admitSender(user);
+        admission.admitSender(user);
+        assertThatThrownBy(() -> admission.admitSender(user))
+                .isInstanceOf(TooManyRequestsException.class)
+                .extracting(e -> ((TooManyRequestsException) e).getRetryAfterSeconds()).isEqualTo(1L);
+    }
+
+    @Test
+    void onlyRetriesOfTheSameSenderAreNotCharged() {
+        ThreadService service = mock(ThreadService.class);
+        MessageModelAssembler assembler = mock(MessageModelAssembler.class);
+        when(assembler.toModel(any())).thenAnswer(call -> new MessageModel().add(Link.of("/threads/t/messages/m")));
+        ThreadController controller = new ThreadController(service, null, assembler, null, null, null, null,
+                recentKeys, admission, mock(ActivityTracker.class));
+        UUID threadId = UUID.randomUUID();
+        UUID sender = UUID.randomUUID();
+
+        controller.postMessage(threadId, new ThreadController.MessageRequest(sender, "hi"), "shared");
+        for (int i = 0; i < 10; i++) {
+            controller.postMessage(threadId, new ThreadController.MessageRequest(sender, "hi"), "shared");
+        }
+        verify(service, times(1)).postMessage(threadId, sender, "hi", "shared");
+
+        // the same key from other senders is a new post each time, and charged to the thread
+        controller.postMessage(threadId, new ThreadController.MessageRequest(UUID.randomUUID(), "hi"), "shared");
+        controller.postMessage(threadId, new ThreadController.MessageRequest(UUID.randomUUID(), "hi"), "shared");
+        assertThatThrownBy(() -> controller.postMessage(threadId, new ThreadController.MessageRequest(UUID.randomUUID(), "hi"), "shared"))
+                .isInstanceOf(TooManyRequestsException.class)
+                .hasMessageContaining("post-message per thread");
+        verify(service, times(3)).postMessage(eq(threadId), any(), eq("hi"), eq("shared"));
+    }
+
+    @Test
+    void leavesOtherRequestsAlone() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThat(send("GET", "/threads/" + UUID.randomUUID().toString().substring(1) + "/messages").getStatus()).isEqualTo(200);
+            assertThat(send("GET", "/users/not-a-uuid-not-a-uuid-not-a-uuid-not/threads").getStatus()).isEqualTo(200);
+            assertThat(send("PUT", "/threads/direct").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void tableStaysBoundedAcrossManyKeys() {
+        TokenBucketTable table = new TokenBucketTable(1000);
+        int rejected = 0;
+        for (long key = 0; key < 1_000_000; key++) {
+            if (table.tryAcquire(TokenBucketTable.hash(key, key, 1), 1_000, 1, 1) > 0) {
+                rejected++;
+            }
+        }
+        assertThat(table.capacity()).isEqualTo(1024);
+        // new keys evict old buckets; only a 16-bit fingerprint collision makes a new key inherit a spent bucket
+        assertThat(rejected).isLessThan(100);
+    }
+
+    private MockHttpServletResponse send(String method, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, path), response, new MockFilterChain());
+        return response;
+    }
+}